@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the average time and memory allocated per operation, and
+ * writes the results as JSON.
+ *
+ * <p>
+ * JMH itself runs benchmarks in forked JVMs, where the Robolectric
+ * sandbox (which provides the Android framework classes) is not
+ * available. Instead, this follows the same warmup/measurement iteration
+ * model in-process and writes results in the same JSON layout as JMH's
+ * {@code -rf json} output, so that the same tooling can be used to
+ * compare runs.
+ * </p>
+ */
+final class BenchmarkRunner {
+
+    /**
+     * The system property (set in {@code build.gradle}) specifying where
+     * to write the results.
+     */
+    private static final String OUTPUT_DIR_PROPERTY = "usefulviews.benchmark.outputDir";
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASUREMENT_ITERATIONS = 10;
+
+    /**
+     * The minimum time each iteration should take. Operations are
+     * repeated within an iteration until this has elapsed.
+     */
+    private static final long MIN_ITERATION_NANOS = 100000000L;  // 100ms
+
+    /**
+     * An operation to be measured
+     */
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    private final String mSuiteName;
+    private final List<String> mResults = new ArrayList<>();
+
+    private final ThreadMXBean mThreadBean = ManagementFactory.getThreadMXBean();
+
+
+    BenchmarkRunner(Class<?> suite) {
+        mSuiteName = suite.getName();
+    }
+
+    /**
+     * Measures an operation without any parameters
+     *
+     * @see #measure(String, Map, Operation)
+     */
+    void measure(String name, Operation operation) throws Exception {
+        measure(name, new LinkedHashMap<String, String>(), operation);
+    }
+
+    /**
+     * Measures the average time and allocation of an operation.
+     *
+     * @param name The name of the benchmark
+     * @param params Parameters of the benchmark (e.g. the number of items)
+     * @param operation The operation to measure
+     */
+    void measure(String name, Map<String, String> params, Operation operation)
+            throws Exception {
+        // Find how many operations to run per iteration, doubling until
+        // one iteration takes long enough to time reliably
+        int batchSize = 1;
+        while (runBatch(operation, batchSize)[0] < MIN_ITERATION_NANOS
+                && batchSize < (1 << 20)) {
+            batchSize *= 2;
+        }
+
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runBatch(operation, batchSize);
+        }
+
+        double[] nanosPerOp = new double[MEASUREMENT_ITERATIONS];
+        double[] bytesPerOp = new double[MEASUREMENT_ITERATIONS];
+        for (int i = 0; i < MEASUREMENT_ITERATIONS; i++) {
+            long[] batch = runBatch(operation, batchSize);
+            nanosPerOp[i] = (double) batch[0] / batchSize;
+            bytesPerOp[i] = (double) batch[1] / batchSize;
+        }
+
+        String result = toJson(mSuiteName + "." + name, params, nanosPerOp, bytesPerOp);
+        mResults.add(result);
+        System.out.println(result);
+    }
+
+    /**
+     * @return the elapsed nanoseconds and allocated bytes for running the
+     * operation {@code batchSize} times
+     */
+    private long[] runBatch(Operation operation, int batchSize) throws Exception {
+        final long startBytes = allocatedBytes();
+        final long startNanos = System.nanoTime();
+        for (int i = 0; i < batchSize; i++) {
+            operation.run();
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+        final long allocated = allocatedBytes() - startBytes;
+        return new long[] {elapsedNanos, allocated};
+    }
+
+    private long allocatedBytes() {
+        if (mThreadBean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) mThreadBean)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    /**
+     * Writes all results measured so far to a JSON file named after the
+     * suite, in the output directory.
+     */
+    void writeResults() throws IOException {
+        String outputDir = System.getProperty(OUTPUT_DIR_PROPERTY, "build/reports/benchmark");
+        File dir = new File(outputDir);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create output directory " + dir);
+        }
+
+        Writer writer = new FileWriter(new File(dir, mSuiteName + ".json"));
+        try {
+            writer.write("[\n");
+            for (int i = 0; i < mResults.size(); i++) {
+                writer.write(mResults.get(i));
+                writer.write(i == mResults.size() - 1 ? "\n" : ",\n");
+            }
+            writer.write("]\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String toJson(String benchmark, Map<String, String> params,
+                                 double[] nanosPerOp, double[] bytesPerOp) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"benchmark\":\"").append(benchmark).append('"');
+        sb.append(",\"mode\":\"avgt\",\"threads\":1,\"forks\":0");
+        sb.append(",\"warmupIterations\":").append(WARMUP_ITERATIONS);
+        sb.append(",\"measurementIterations\":").append(MEASUREMENT_ITERATIONS);
+
+        if (!params.isEmpty()) {
+            sb.append(",\"params\":{");
+            boolean first = true;
+            for (Map.Entry<String, String> param : params.entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                sb.append('"').append(param.getKey()).append("\":\"")
+                        .append(param.getValue()).append('"');
+                first = false;
+            }
+            sb.append('}');
+        }
+
+        sb.append(",\"primaryMetric\":");
+        appendMetric(sb, nanosPerOp, "ns/op");
+        sb.append(",\"secondaryMetrics\":{\"\u00b7gc.alloc.rate.norm\":");
+        appendMetric(sb, bytesPerOp, "B/op");
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, double[] values, String unit) {
+        double mean = 0;
+        for (double value : values) {
+            mean += value;
+        }
+        mean /= values.length;
+
+        double variance = 0;
+        for (double value : values) {
+            variance += (value - mean) * (value - mean);
+        }
+        double stdDev = Math.sqrt(variance / Math.max(1, values.length - 1));
+
+        sb.append("{\"score\":").append(format(mean));
+        sb.append(",\"scoreError\":").append(format(stdDev));
+        sb.append(",\"scoreUnit\":\"").append(unit).append('"');
+        sb.append(",\"rawData\":[[");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(format(values[i]));
+        }
+        sb.append("]]}");
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.US, "%.3f", value);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews.benchmark;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.LayoutInflater;
+
+import com.satsuware.usefulviews.FlippableView;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class FlippableViewBenchmark {
+
+    private static final BenchmarkRunner sRunner =
+            new BenchmarkRunner(FlippableViewBenchmark.class);
+
+    private Context mContext;
+    private LayoutInflater mInflater;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mInflater = LayoutInflater.from(mContext);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void construct() throws Exception {
+        sRunner.measure("constructFromXml", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                mInflater.inflate(R.layout.bench_flippable_view, null);
+            }
+        });
+
+        sRunner.measure("constructFromCode", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                new FlippableView(mContext,
+                        mInflater.inflate(R.layout.bench_face_front, null),
+                        mInflater.inflate(R.layout.bench_face_back, null));
+            }
+        });
+    }
+
+    @Test
+    public void measureAndLayout() throws Exception {
+        final FlippableView flippableView = createFlippableView();
+
+        sRunner.measure("measureAndLayout", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                ViewBenchmarks.forceLayoutRecursively(flippableView);
+                ViewBenchmarks.measureAndLayout(flippableView);
+            }
+        });
+    }
+
+    @Test
+    public void draw() throws Exception {
+        final FlippableView flippableView = createFlippableView();
+        ViewBenchmarks.measureAndLayout(flippableView);
+        final Canvas canvas = ViewBenchmarks.createCanvas();
+
+        sRunner.measure("draw", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                flippableView.draw(canvas);
+            }
+        });
+    }
+
+    @Test
+    public void flip() throws Exception {
+        final FlippableView flippableView = createFlippableView();
+        ViewBenchmarks.measureAndLayout(flippableView);
+
+        sRunner.measure("flipWithoutAnimation", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                flippableView.flip(false);
+            }
+        });
+
+        sRunner.measure("flipAnimated", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                flippableView.flip(true);
+            }
+        });
+    }
+
+    private FlippableView createFlippableView() {
+        return new FlippableView(mContext,
+                mInflater.inflate(R.layout.bench_face_front, null),
+                mInflater.inflate(R.layout.bench_face_back, null));
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews.benchmark;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.AdapterView;
+
+import com.satsuware.usefulviews.LabelledSpinner;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LabelledSpinnerBenchmark {
+
+    private static final int[] ITEM_COUNTS = new int[] {10, 1000, 100000};
+
+    private static final BenchmarkRunner sRunner =
+            new BenchmarkRunner(LabelledSpinnerBenchmark.class);
+
+    private Context mContext;
+    private LayoutInflater mInflater;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.application;
+        mInflater = LayoutInflater.from(mContext);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        sRunner.writeResults();
+    }
+
+    @Test
+    public void construct() throws Exception {
+        sRunner.measure("constructFromXml", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                mInflater.inflate(R.layout.bench_labelled_spinner, null);
+            }
+        });
+
+        sRunner.measure("constructFromCode", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                new LabelledSpinner(mContext);
+            }
+        });
+    }
+
+    @Test
+    public void setItemsArray() throws Exception {
+        final LabelledSpinner spinner = new LabelledSpinner(mContext);
+        for (int count : ITEM_COUNTS) {
+            final List<String> items = createItems(count);
+            sRunner.measure("setItemsArray", Collections.singletonMap("items", String.valueOf(count)),
+                    new BenchmarkRunner.Operation() {
+                        @Override
+                        public void run() {
+                            spinner.setItemsArray(items);
+                        }
+                    });
+        }
+    }
+
+    @Test
+    public void measureAndLayout() throws Exception {
+        final LabelledSpinner spinner =
+                (LabelledSpinner) mInflater.inflate(R.layout.bench_labelled_spinner, null);
+        spinner.setItemsArray(createItems(10));
+
+        sRunner.measure("measureAndLayout", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                ViewBenchmarks.forceLayoutRecursively(spinner);
+                ViewBenchmarks.measureAndLayout(spinner);
+            }
+        });
+    }
+
+    @Test
+    public void draw() throws Exception {
+        final LabelledSpinner spinner =
+                (LabelledSpinner) mInflater.inflate(R.layout.bench_labelled_spinner, null);
+        spinner.setItemsArray(createItems(10));
+        ViewBenchmarks.measureAndLayout(spinner);
+        final Canvas canvas = ViewBenchmarks.createCanvas();
+
+        sRunner.measure("draw", new BenchmarkRunner.Operation() {
+            @Override
+            public void run() {
+                spinner.draw(canvas);
+            }
+        });
+    }
+
+    @Test
+    public void selectItem() throws Exception {
+        final LabelledSpinner spinner = new LabelledSpinner(mContext);
+        spinner.setItemsArray(createItems(10));
+        spinner.setDefaultErrorEnabled(true);
+        spinner.setOnItemChosenListener(new LabelledSpinner.OnItemChosenListener() {
+            @Override
+            public void onItemChosen(View labelledSpinner, AdapterView<?> adapterView,
+                                     View itemView, int position, long id) {}
+
+            @Override
+            public void onNothingChosen(View labelledSpinner, AdapterView<?> adapterView) {}
+        });
+        final AdapterView<?> adapterView = spinner.getSpinner();
+
+        // Selecting items that do not change the error state should not
+        // allocate, so B/op should be 0 here
+        spinner.onItemSelected(adapterView, null, 1, 1);
+        sRunner.measure("selectItemWithoutError", new BenchmarkRunner.Operation() {
+            private int mPosition = 1;
+
+            @Override
+            public void run() {
+                mPosition = mPosition == 9 ? 1 : mPosition + 1;
+                spinner.onItemSelected(adapterView, null, mPosition, mPosition);
+            }
+        });
+
+        sRunner.measure("selectItemTogglingError", new BenchmarkRunner.Operation() {
+            private int mPosition = 1;
+
+            @Override
+            public void run() {
+                mPosition = mPosition == 0 ? 1 : 0;
+                spinner.onItemSelected(adapterView, null, mPosition, mPosition);
+            }
+        });
+    }
+
+    private static List<String> createItems(int count) {
+        List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add("Item " + i);
+        }
+        return items;
+    }
+}
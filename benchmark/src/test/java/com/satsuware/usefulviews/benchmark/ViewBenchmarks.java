@@ -0,0 +1,63 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * Helpers shared by the benchmark suites
+ */
+final class ViewBenchmarks {
+
+    static final int WIDTH = 1080;
+    static final int HEIGHT = 1920;
+
+    private ViewBenchmarks() {}
+
+    /**
+     * Marks the View and all of its descendants as needing layout, so that
+     * the next measure/layout pass does the full amount of work instead of
+     * returning early for Views that have not changed.
+     */
+    static void forceLayoutRecursively(View view) {
+        view.forceLayout();
+        if (view instanceof ViewGroup) {
+            ViewGroup group = (ViewGroup) view;
+            for (int i = 0; i < group.getChildCount(); i++) {
+                forceLayoutRecursively(group.getChildAt(i));
+            }
+        }
+    }
+
+    /**
+     * Measures and lays out the View as if it were the width of a phone
+     * screen, with its height wrapping its content.
+     */
+    static void measureAndLayout(View view) {
+        view.measure(
+                View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.AT_MOST));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+    }
+
+    static Canvas createCanvas() {
+        return new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import java.util.List;
+
+/**
+ * Loads the items of a dependent {@link LabelledSpinner} from the item
+ * selected in its parent spinner (for example, the regions of the country
+ * selected in the parent).
+ *
+ * @param <T> The type of the items
+ *
+ * @see LabelledSpinner#setParentSpinner(LabelledSpinner, CascadingItemLoader)
+ */
+public interface CascadingItemLoader<T> {
+
+    /**
+     * Loads the items for a selection in the parent spinner. This is
+     * called on a background thread. If the parent's selection changes
+     * while this is running, the thread is interrupted and the result is
+     * ignored.
+     *
+     * @param parentItem The item selected in the parent spinner. This is
+     *                   used as the key for cached results, so it should
+     *                   implement {@link Object#equals(Object)} and
+     *                   {@link Object#hashCode()}.
+     * @return the items for the dependent spinner. This list is cached and
+     * shown directly, so it must not be modified afterwards.
+     */
+    List<T> loadItems(Object parentItem);
+}
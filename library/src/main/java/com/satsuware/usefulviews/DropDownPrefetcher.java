@@ -0,0 +1,125 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.util.DisplayMetrics;
+import android.widget.ListView;
+import android.widget.Spinner;
+import android.widget.SpinnerAdapter;
+
+/**
+ * Creates the first screenful of a Spinner's drop down views while the UI
+ * thread is idle, so that opening the drop down does not have to inflate
+ * them.
+ *
+ * <p>
+ * One view is created each time the message queue becomes idle, so that
+ * prefetching never delays a frame by more than a single inflation. Only
+ * adapters that are a {@link PrefetchingArrayAdapter} can be prefetched.
+ * </p>
+ *
+ * @see LabelledSpinner#setDropDownPrefetchEnabled(boolean)
+ */
+final class DropDownPrefetcher implements MessageQueue.IdleHandler {
+
+    /**
+     * The smallest expected height of a drop down row, used to estimate
+     * how many rows fit on the screen
+     */
+    private static final int MIN_ROW_HEIGHT_DP = 48;
+
+    private final Spinner mSpinner;
+
+    /**
+     * The number of rows that fit on the screen
+     */
+    private final int mRowCount;
+
+    /**
+     * Used as the parent when inflating views, so that they have the same
+     * type of LayoutParams as rows in the drop down. This is created when
+     * first needed.
+     */
+    private ListView mInflationParent;
+
+    private boolean mScheduled;
+
+
+    DropDownPrefetcher(Spinner spinner) {
+        mSpinner = spinner;
+        final DisplayMetrics metrics = spinner.getResources().getDisplayMetrics();
+        mRowCount = (int) Math.ceil(metrics.heightPixels / (MIN_ROW_HEIGHT_DP * metrics.density));
+    }
+
+    /**
+     * Starts prefetching when the UI thread is next idle, if it has not
+     * already been started.
+     */
+    void schedule() {
+        if (!mScheduled) {
+            mScheduled = true;
+            Looper.myQueue().addIdleHandler(this);
+        }
+    }
+
+    /**
+     * Stops prefetching. Views already prefetched are kept by the adapter.
+     */
+    void cancel() {
+        if (mScheduled) {
+            mScheduled = false;
+            Looper.myQueue().removeIdleHandler(this);
+        }
+    }
+
+    /**
+     * Prefetches the next view that has not been prefetched yet.
+     *
+     * @return true if there are more views to prefetch
+     */
+    @Override
+    public boolean queueIdle() {
+        final SpinnerAdapter adapter = mSpinner.getAdapter();
+        if (!(adapter instanceof PrefetchingArrayAdapter)) {
+            mScheduled = false;
+            return false;
+        }
+        final PrefetchingArrayAdapter<?> prefetchingAdapter = (PrefetchingArrayAdapter<?>) adapter;
+
+        // The drop down is scrolled to show the selected item, so prefetch
+        // the rows from there
+        final int count = prefetchingAdapter.getCount();
+        final int start = Math.max(0,
+                Math.min(mSpinner.getSelectedItemPosition(), count - mRowCount));
+        final int end = Math.min(count, start + mRowCount);
+
+        for (int position = start; position < end; position++) {
+            if (!prefetchingAdapter.isDropDownViewPrefetched(position)) {
+                if (mInflationParent == null) {
+                    mInflationParent = new ListView(mSpinner.getContext());
+                }
+                prefetchingAdapter.prefetchDropDownView(position, mInflationParent);
+                mScheduled = position + 1 < end;
+                return mScheduled;
+            }
+        }
+        mScheduled = false;
+        return false;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.support.annotation.ArrayRes;
+import android.util.SparseArray;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Caches the entries of array resources used as the items of
+ * {@link LabelledSpinner}s, so that spinners showing the same array share
+ * one list instead of each reading and copying the resource.
+ *
+ * <p>
+ * The entries depend on the configuration (for example, the locale or
+ * night mode), so they are cached separately for each {@link Resources}
+ * instance, as contexts with an overridden configuration have their own.
+ * The entries for a Resources instance are cleared whenever it is used
+ * with a different configuration to the one they were read with, and are
+ * discarded with it once it is no longer used.
+ * </p>
+ */
+final class EntriesCache {
+
+    private static final Map<Resources, ResourcesEntries> sEntries = new WeakHashMap<>();
+
+    private EntriesCache() {}
+
+    /**
+     * @param resources The resources to read the array from
+     * @param arrayResId The identifier of the array resource
+     * @return the entries of the array. This list cannot be modified.
+     */
+    static synchronized List<CharSequence> getEntries(Resources resources,
+                                                      @ArrayRes int arrayResId) {
+        ResourcesEntries resourcesEntries = sEntries.get(resources);
+        if (resourcesEntries == null) {
+            resourcesEntries = new ResourcesEntries();
+            sEntries.put(resources, resourcesEntries);
+        }
+
+        final Configuration configuration = resources.getConfiguration();
+        if (resourcesEntries.mConfiguration == null
+                || !resourcesEntries.mConfiguration.equals(configuration)) {
+            resourcesEntries.mEntries.clear();
+            resourcesEntries.mConfiguration = new Configuration(configuration);
+        }
+
+        List<CharSequence> entries = resourcesEntries.mEntries.get(arrayResId);
+        if (entries == null) {
+            entries = Collections.unmodifiableList(
+                    Arrays.asList(resources.getTextArray(arrayResId)));
+            resourcesEntries.mEntries.put(arrayResId, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * The cached entries read from one {@link Resources} instance
+     */
+    private static final class ResourcesEntries {
+
+        final SparseArray<List<CharSequence>> mEntries = new SparseArray<>();
+
+        /**
+         * The configuration that the cached entries were read with
+         */
+        Configuration mConfiguration;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.util.SparseArray;
+import android.view.View;
+
+import java.util.ArrayList;
+
+/**
+ * A pool of Views used as the sides of {@link FlippableView}s, which can
+ * be shared between many FlippableViews so that their Views are reused
+ * instead of inflated again.
+ *
+ * <p>
+ * This is most useful when FlippableViews are rows in a
+ * {@code RecyclerView} or {@link android.widget.ListView}: when a row is
+ * rebound with {@link FlippableView#setFrontAndBackLayouts(int, int)}, its
+ * old Views are returned to the pool and Views of the right type are taken
+ * from it.
+ * </p>
+ *
+ * <p>
+ * Views are grouped by type (for FlippableViews, the layout resource they
+ * were inflated from). Each type has a maximum number of Views kept in the
+ * pool, and counts of how many times a View was requested and found (a
+ * hit) or not found (a miss), which can be used to tune the maximums.
+ * This class is not thread-safe, and should only be used on the UI thread.
+ * </p>
+ *
+ * @see FlippableView#setFaceViewPool(FaceViewPool)
+ */
+public class FaceViewPool {
+
+    /**
+     * The default maximum number of Views of each type kept in the pool
+     */
+    public static final int DEFAULT_MAX_RECYCLED_VIEWS = 5;
+
+    private final SparseArray<ScrapData> mScrap = new SparseArray<>();
+
+    /**
+     * The Views, limit and counters for one type of View
+     */
+    private static class ScrapData {
+        final ArrayList<View> mViews = new ArrayList<>();
+        int mMaxRecycledViews = DEFAULT_MAX_RECYCLED_VIEWS;
+        int mHitCount;
+        int mMissCount;
+    }
+
+    private ScrapData getScrapData(int viewType) {
+        ScrapData scrapData = mScrap.get(viewType);
+        if (scrapData == null) {
+            scrapData = new ScrapData();
+            mScrap.put(viewType, scrapData);
+        }
+        return scrapData;
+    }
+
+    /**
+     * Sets the maximum number of Views of a type kept in the pool. If
+     * there are already more than this, the excess Views are discarded.
+     *
+     * @param viewType The type of View
+     * @param max The maximum number of Views of this type to keep
+     */
+    public void setMaxRecycledViews(int viewType, int max) {
+        ScrapData scrapData = getScrapData(viewType);
+        scrapData.mMaxRecycledViews = max;
+        while (scrapData.mViews.size() > max) {
+            scrapData.mViews.remove(scrapData.mViews.size() - 1);
+        }
+    }
+
+    /**
+     * Takes a View of the given type out of the pool.
+     *
+     * @param viewType The type of View
+     * @return a View of this type, or null if there are none in the pool
+     * (in which case a new View should be created)
+     */
+    public View acquire(int viewType) {
+        ScrapData scrapData = getScrapData(viewType);
+        final int size = scrapData.mViews.size();
+        if (size == 0) {
+            scrapData.mMissCount++;
+            return null;
+        }
+        scrapData.mHitCount++;
+        return scrapData.mViews.remove(size - 1);
+    }
+
+    /**
+     * Returns a View to the pool so that it can be reused. If the pool is
+     * already full for this type, the View is discarded.
+     *
+     * @param viewType The type of View
+     * @param view The View, which must not have a parent
+     * @throws IllegalArgumentException if the View still has a parent
+     */
+    public void release(int viewType, View view) {
+        if (view.getParent() != null) {
+            throw new IllegalArgumentException("A View must be removed from its parent " +
+                    "before being released to the pool");
+        }
+        ScrapData scrapData = getScrapData(viewType);
+        if (scrapData.mViews.size() < scrapData.mMaxRecycledViews
+                && !scrapData.mViews.contains(view)) {
+            scrapData.mViews.add(view);
+        }
+    }
+
+    /**
+     * @param viewType The type of View
+     * @return the number of Views of this type currently in the pool
+     */
+    public int getRecycledViewCount(int viewType) {
+        ScrapData scrapData = mScrap.get(viewType);
+        return scrapData == null ? 0 : scrapData.mViews.size();
+    }
+
+    /**
+     * @param viewType The type of View
+     * @return the number of times a View of this type was requested and
+     * found in the pool
+     */
+    public int getHitCount(int viewType) {
+        ScrapData scrapData = mScrap.get(viewType);
+        return scrapData == null ? 0 : scrapData.mHitCount;
+    }
+
+    /**
+     * @param viewType The type of View
+     * @return the number of times a View of this type was requested but
+     * none were in the pool
+     */
+    public int getMissCount(int viewType) {
+        ScrapData scrapData = mScrap.get(viewType);
+        return scrapData == null ? 0 : scrapData.mMissCount;
+    }
+
+    /**
+     * Resets the hit and miss counts for all types of View
+     */
+    public void resetCounts() {
+        for (int i = 0; i < mScrap.size(); i++) {
+            mScrap.valueAt(i).mHitCount = 0;
+            mScrap.valueAt(i).mMissCount = 0;
+        }
+    }
+
+    /**
+     * Discards all Views in the pool. Limits and counts are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < mScrap.size(); i++) {
+            mScrap.valueAt(i).mViews.clear();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.TypedValue;
+
+/**
+ * Draws the label, divider line and error label of a
+ * {@link LabelledSpinner} directly onto its canvas, so that these do not
+ * need to exist as child Views when flat rendering is enabled.
+ *
+ * <p>
+ * The {@link android.text.StaticLayout}s used for the label and error
+ * text are cached, and are only rebuilt when their text or the width
+ * available to them changes.
+ * </p>
+ *
+ * @see LabelledSpinner#setFlatRenderingEnabled(boolean)
+ */
+final class FlatSpinnerDecoration {
+
+    /**
+     * The text size (in sp) of the label and error label, matching the
+     * TextViews from {@code widget_labelled_spinner.xml}.
+     */
+    private static final int TEXT_SIZE_SP = 12;
+
+    private final TextPaint mLabelPaint;
+    private final TextPaint mErrorPaint;
+    private final Paint mDividerPaint;
+
+    private CharSequence mLabelText = "";
+    private CharSequence mErrorText = "";
+
+    /**
+     * Cached layouts for the label and error text. These are set to null
+     * when they need to be rebuilt.
+     */
+    private StaticLayout mLabelLayout, mErrorLayout;
+
+    /**
+     * The width that the cached layouts were built for
+     */
+    private int mLayoutWidth = -1;
+
+
+    FlatSpinnerDecoration(Context context, int widgetColor, int errorColor) {
+        final float textSize = TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP,
+                TEXT_SIZE_SP, context.getResources().getDisplayMetrics());
+
+        mLabelPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        mLabelPaint.setTextSize(textSize);
+        mLabelPaint.setColor(widgetColor);
+
+        mErrorPaint = new TextPaint(mLabelPaint);
+        mErrorPaint.setColor(errorColor);
+
+        mDividerPaint = new Paint();
+        mDividerPaint.setColor(widgetColor);
+    }
+
+
+    /**
+     * @param text The text for the label
+     * @return true if the text has changed, meaning that the layout
+     * needs to be measured again
+     */
+    boolean setLabelText(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+        if (text.equals(mLabelText)) {
+            return false;
+        }
+        mLabelText = text;
+        mLabelLayout = null;
+        return true;
+    }
+
+    /**
+     * @param text The text for the error label
+     * @return true if the text has changed, meaning that the layout
+     * needs to be measured again
+     */
+    boolean setErrorText(CharSequence text) {
+        if (text == null) {
+            text = "";
+        }
+        if (text.equals(mErrorText)) {
+            return false;
+        }
+        mErrorText = text;
+        mErrorLayout = null;
+        return true;
+    }
+
+    /**
+     * Sets the color of the label text. The cached layout keeps a
+     * reference to the paint, so it does not need to be rebuilt.
+     */
+    void setLabelColor(int color) {
+        mLabelPaint.setColor(color);
+    }
+
+    void setDividerColor(int color) {
+        mDividerPaint.setColor(color);
+    }
+
+    /**
+     * @param width The width available to the text, in pixels
+     * @return the height of the label text, in pixels
+     */
+    int getLabelHeight(int width) {
+        ensureLayouts(width);
+        return mLabelLayout.getHeight();
+    }
+
+    /**
+     * @param width The width available to the text, in pixels
+     * @return the height of the error text, in pixels
+     */
+    int getErrorHeight(int width) {
+        ensureLayouts(width);
+        return mErrorLayout.getHeight();
+    }
+
+    private void ensureLayouts(int width) {
+        if (width != mLayoutWidth) {
+            mLayoutWidth = width;
+            mLabelLayout = null;
+            mErrorLayout = null;
+        }
+        if (mLabelLayout == null) {
+            mLabelLayout = makeLayout(mLabelText, mLabelPaint, width);
+        }
+        if (mErrorLayout == null) {
+            mErrorLayout = makeLayout(mErrorText, mErrorPaint, width);
+        }
+    }
+
+    private static StaticLayout makeLayout(CharSequence text, TextPaint paint, int width) {
+        return new StaticLayout(text, paint, Math.max(0, width),
+                Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+    }
+
+    /**
+     * Draws the label, divider and error label. The layouts must have
+     * been built (i.e. the heights obtained) beforehand, which happens
+     * when the {@link LabelledSpinner} is measured.
+     *
+     * @param canvas The canvas to draw onto
+     * @param textLeft The left edge of the label, divider and error text
+     * @param labelTop The top edge of the label text
+     * @param dividerTop The top edge of the divider line
+     * @param dividerRight The right edge of the divider line
+     * @param dividerHeight The thickness of the divider line
+     * @param errorTop The top edge of the error text
+     */
+    void draw(Canvas canvas, int textLeft, int labelTop, int dividerTop, int dividerRight,
+              int dividerHeight, int errorTop) {
+        if (mLabelLayout == null || mErrorLayout == null) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(textLeft, labelTop);
+        mLabelLayout.draw(canvas);
+        canvas.restore();
+
+        canvas.drawRect(textLeft, dividerTop, dividerRight, dividerTop + dividerHeight,
+                mDividerPaint);
+
+        canvas.save();
+        canvas.translate(textLeft, errorTop);
+        mErrorLayout.draw(canvas);
+        canvas.restore();
+    }
+}
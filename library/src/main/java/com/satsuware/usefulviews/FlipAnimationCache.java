@@ -0,0 +1,160 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.view.animation.AccelerateDecelerateInterpolator;
+import android.view.animation.Animation;
+import android.view.animation.AnimationSet;
+import android.view.animation.Interpolator;
+import android.view.animation.ScaleAnimation;
+import android.view.animation.TranslateAnimation;
+
+/**
+ * The Animations used by a {@link FlippableView} for its legacy flip
+ * animation, created once and reused for every flip.
+ *
+ * <p>
+ * The Animations are built in code to match {@code R.anim.grow_from_middle}
+ * and {@code R.anim.shrink_to_middle}, so no XML is parsed when flipping.
+ * The default duration is read from resources once per process. Each
+ * FlippableView has its own instances, because an Animation holds the
+ * state (start time and sizes) of the View it is running on, so the same
+ * instance cannot run on two Views at once.
+ * </p>
+ */
+final class FlipAnimationCache {
+
+    /**
+     * The time between the end of the out animation and the start of the
+     * in animation, as in {@code R.anim.grow_from_middle}
+     */
+    private static final long IN_ANIMATION_GAP = 80;
+
+    private static final Interpolator DEFAULT_INTERPOLATOR =
+            new AccelerateDecelerateInterpolator();
+
+    /**
+     * The default duration of each half of the flip, read from resources
+     * when first needed
+     */
+    private static long sDefaultDuration = -1;
+
+    private long mDuration;
+    private Interpolator mInterpolator;
+
+    private Animation mInAnimation, mOutAnimation;
+
+
+    FlipAnimationCache(Context context) {
+        if (sDefaultDuration < 0) {
+            sDefaultDuration = context.getResources()
+                    .getInteger(R.integer.widget_flippableView_animDuration);
+        }
+        mDuration = sDefaultDuration;
+    }
+
+    /**
+     * @return the duration of each half of the flip, in milliseconds
+     */
+    long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * @param duration The duration of each half of the flip, in
+     *                 milliseconds, or a negative number for the default
+     */
+    void setDuration(long duration) {
+        duration = duration < 0 ? sDefaultDuration : duration;
+        if (duration != mDuration) {
+            mDuration = duration;
+            invalidate();
+        }
+    }
+
+    /**
+     * @return the custom interpolator, or null if the default is used
+     */
+    Interpolator getInterpolator() {
+        return mInterpolator;
+    }
+
+    /**
+     * @param interpolator The interpolator, or null for the default
+     */
+    void setInterpolator(Interpolator interpolator) {
+        if (interpolator != mInterpolator) {
+            mInterpolator = interpolator;
+            invalidate();
+        }
+    }
+
+    private void invalidate() {
+        mInAnimation = null;
+        mOutAnimation = null;
+    }
+
+    /**
+     * @return the Animation for the face being flipped to, reset so that
+     * it can be started again
+     */
+    Animation getInAnimation() {
+        if (mInAnimation == null) {
+            mInAnimation = createAnimation(0, 1, 0.5f, 0, mDuration + IN_ANIMATION_GAP);
+        } else {
+            mInAnimation.reset();
+        }
+        return mInAnimation;
+    }
+
+    /**
+     * @return the Animation for the face being flipped away from, reset so
+     * that it can be started again
+     */
+    Animation getOutAnimation() {
+        if (mOutAnimation == null) {
+            mOutAnimation = createAnimation(1, 0, 0, 0.5f, 0);
+        } else {
+            mOutAnimation.reset();
+        }
+        return mOutAnimation;
+    }
+
+    /**
+     * Creates an animation that scales a View vertically from its top
+     * while moving it down, so that it appears to scale from its middle
+     */
+    private Animation createAnimation(float fromYScale, float toYScale, float fromYDelta,
+                                      float toYDelta, long startOffset) {
+        ScaleAnimation scale = new ScaleAnimation(1, 1, fromYScale, toYScale);
+        scale.setDuration(mDuration);
+        scale.setStartOffset(startOffset);
+
+        TranslateAnimation translate = new TranslateAnimation(
+                Animation.ABSOLUTE, 0, Animation.ABSOLUTE, 0,
+                Animation.RELATIVE_TO_SELF, fromYDelta, Animation.RELATIVE_TO_SELF, toYDelta);
+        translate.setDuration(mDuration);
+        translate.setStartOffset(startOffset);
+
+        AnimationSet set = new AnimationSet(true);
+        set.setInterpolator(mInterpolator == null ? DEFAULT_INTERPOLATOR : mInterpolator);
+        set.addAnimation(scale);
+        set.addAnimation(translate);
+        return set;
+    }
+}
@@ -16,16 +16,26 @@
 
 package com.satsuware.usefulviews;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
+import android.support.annotation.LayoutRes;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewTreeObserver;
+import android.view.ViewPropertyAnimator;
+import android.view.animation.AccelerateInterpolator;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
 import android.widget.FrameLayout;
 import android.widget.ViewFlipper;
 
@@ -39,8 +49,49 @@ import android.widget.ViewFlipper;
  * a flipping animation to turn to the other side of the card.
  * </p>
  *
+ * <p>
+ * If the Views are complex, they can be inflated on a background thread
+ * (see {@link #setFrontAndBackViewsAsync(int, int)}). A lightweight
+ * placeholder is shown until they are ready.
+ * </p>
+ *
+ * <p>
+ * To save memory when most cards are never flipped, the back View can
+ * instead be created by a {@link BackViewProvider} the first time the card
+ * is flipped, and released again after the front has been showing for a
+ * while (see {@link #setBackViewProvider(BackViewProvider)}).
+ * </p>
+ *
+ * <p>
+ * When FlippableViews are used as rows of a list, a {@link FaceViewPool}
+ * can be shared between them so that rebinding a row with
+ * {@link #setFrontAndBackLayouts(int, int)} reuses Views instead of
+ * inflating new ones (see {@link #setFaceViewPool(FaceViewPool)}).
+ * </p>
+ *
+ * <p>
+ * By default, flips use the original View animations, which redraw the
+ * faces on every frame. The {@link #FLIP_ANIMATION_SCALE} and
+ * {@link #FLIP_ANIMATION_ROTATION} animations instead animate View
+ * properties while the faces are drawn into hardware layers (see
+ * {@link #setFlipAnimation(int)}).
+ * </p>
+ *
+ * <p>
+ * Instead of a front and back, a card can have any number of faces,
+ * created by a {@link FaceProvider} (see
+ * {@link #setFaceProvider(FaceProvider)}). Only the displayed face and
+ * its neighbours are kept, so memory does not grow with the number of
+ * faces.
+ * </p>
+ *
  * @attr ref R.styleable#FlippableView_viewFront
  * @attr ref R.styleable#FlippableView_viewBack
+ * @attr ref R.styleable#FlippableView_asyncInflation
+ * @attr ref R.styleable#FlippableView_placeholderHeight
+ * @attr ref R.styleable#FlippableView_flipAnimation
+ * @attr ref R.styleable#FlippableView_sizingPolicy
+ * @attr ref R.styleable#FlippableView_fixedHeight
  */
 public class FlippableView extends FrameLayout {
 
@@ -61,9 +112,22 @@ public class FlippableView extends FrameLayout {
     private View mFrontView, mBackView;
 
     /**
-     * This is responsible for containing the Views for both sides of
-     * the card/widget. It is used to animate the flip when changing
-     * from showing one side of the card to another.
+     * The ViewGroup containing the Views for both sides of the card/widget.
+     * This is the FlippableView itself, unless {@link #getViewFlipper()}
+     * has been called, in which case it is {@link #mViewFlipper}.
+     */
+    private ViewGroup mFaceContainer = this;
+
+    /**
+     * The side of the card/widget currently displayed (or null if there
+     * are no sides). The other side is {@link #GONE}.
+     */
+    private View mDisplayedFace;
+
+    /**
+     * Only created for compatibility if {@link #getViewFlipper()} is
+     * called, in which case the sides of the card/widget are moved into
+     * it.
      */
     private ViewFlipper mViewFlipper;
 
@@ -78,6 +142,254 @@ public class FlippableView extends FrameLayout {
      */
     private boolean mAnimate = true;
 
+    /**
+     * Used to inflate the front and back Views on a background thread.
+     * This is only created when asynchronous inflation is first used.
+     */
+    private AsyncLayoutInflater mAsyncInflater;
+
+    /**
+     * The number of front/back Views still being inflated asynchronously
+     */
+    private int mPendingInflations;
+
+    /**
+     * Incremented whenever the front/back Views are changed, so that
+     * Views from an earlier asynchronous inflation are ignored.
+     */
+    private int mInflationGeneration;
+
+    /**
+     * The View shown while the front and back Views are being inflated
+     */
+    private View mPlaceholderView;
+
+    /**
+     * The listener notified when asynchronously inflated Views are ready
+     */
+    private OnViewsReadyListener mOnViewsReadyListener;
+
+    /**
+     * The default time (in milliseconds) after flipping back to the front
+     * before a back View created by a {@link BackViewProvider} is released
+     */
+    public static final long DEFAULT_BACK_VIEW_RELEASE_DELAY = 10000;
+
+    /**
+     * Pass to {@link #setBackViewReleaseDelay(long)} so that back Views
+     * are never released
+     */
+    public static final long RELEASE_NEVER = -1;
+
+    /**
+     * Creates the back View when it is first needed, if set
+     */
+    private BackViewProvider mBackViewProvider;
+
+    private long mBackViewReleaseDelay = DEFAULT_BACK_VIEW_RELEASE_DELAY;
+
+    /**
+     * The time (in {@link SystemClock#uptimeMillis()}) at which the back
+     * View is due to be released, or 0 if no release is pending. This is
+     * kept while detached, so that the release can be posted again when
+     * the widget is reattached.
+     */
+    private long mBackViewReleaseTime;
+
+    /**
+     * Releases the back View created by {@link #mBackViewProvider} after the
+     * front has been showing for {@link #mBackViewReleaseDelay}
+     */
+    private final Runnable mReleaseBackViewRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mBackViewReleaseTime = 0;
+            releaseBackView();
+        }
+    };
+
+    /**
+     * Flips the card when either side is clicked
+     */
+    private final OnClickListener mFlipOnClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            flip();
+        }
+    };
+
+    /**
+     * The pool that front and back Views inflated from layout resources
+     * are returned to when replaced, and taken from when needed
+     */
+    private FaceViewPool mFaceViewPool;
+
+    /**
+     * The layout resource that the front/back View was inflated from, or
+     * 0 if the View was set directly. Only Views with a type are returned
+     * to {@link #mFaceViewPool}.
+     */
+    private int mFrontViewType, mBackViewType;
+
+    /**
+     * Flips using the View animations {@code grow_from_middle} and
+     * {@code shrink_to_middle}
+     */
+    public static final int FLIP_ANIMATION_LEGACY = 0;
+
+    /**
+     * Flips by scaling the faces vertically to nothing and back, like the
+     * legacy animation, by animating the {@code scaleY} property
+     */
+    public static final int FLIP_ANIMATION_SCALE = 1;
+
+    /**
+     * Flips by turning the card around its vertical axis, by animating the
+     * {@code rotationY} property
+     */
+    public static final int FLIP_ANIMATION_ROTATION = 2;
+
+    /**
+     * The distance of the camera (in dp) for the rotation animation, far
+     * enough that the card does not appear distorted as it turns
+     */
+    private static final float CAMERA_DISTANCE_DP = 8000;
+
+    private static final Interpolator FLIP_OUT_INTERPOLATOR = new AccelerateInterpolator();
+    private static final Interpolator FLIP_IN_INTERPOLATOR = new DecelerateInterpolator();
+
+    private int mFlipAnimation = FLIP_ANIMATION_LEGACY;
+
+    /**
+     * The legacy flip Animations, and the duration and interpolator used
+     * by all flip animations. This is created when first needed.
+     */
+    private FlipAnimationCache mFlipAnimations;
+
+    /**
+     * The card is as tall as its tallest face, and both faces are
+     * stretched to that height
+     */
+    public static final int SIZING_MAX_OF_FACES = 0;
+
+    /**
+     * The card is as tall as its front face, and the back face is
+     * stretched or cut off to the same height
+     */
+    public static final int SIZING_FRONT_ONLY = 1;
+
+    /**
+     * The card and both faces have a fixed height, regardless of their
+     * contents (see {@link #setFixedHeight(int)})
+     */
+    public static final int SIZING_FIXED = 2;
+
+    private int mSizingPolicy = SIZING_MAX_OF_FACES;
+
+    /**
+     * The height (in pixels) of the card for {@link #SIZING_FIXED}
+     */
+    private int mFixedHeight;
+
+    /**
+     * The default number of faces either side of the displayed face that
+     * are kept when a {@link FaceProvider} is used
+     */
+    public static final int DEFAULT_FACE_RESIDENCY = 1;
+
+    /**
+     * Creates the faces of the card when there are more than just a front
+     * and back, if set
+     */
+    private FaceProvider mFaceProvider;
+
+    /**
+     * The faces created by {@link #mFaceProvider}, or null for faces which
+     * are not currently kept
+     */
+    private View[] mFaces;
+
+    /**
+     * The index of the face displayed when a {@link FaceProvider} is used
+     */
+    private int mCurrentFace;
+
+    private int mFaceResidency = DEFAULT_FACE_RESIDENCY;
+
+    /**
+     * Whether the faces from a {@link FaceProvider} wrap around, so that
+     * the first face follows the last
+     */
+    private boolean mCarouselMode;
+
+    /**
+     * The faces being turned away from and towards during a property flip,
+     * or null if there is no property flip in progress
+     */
+    private View mFlipOutView, mFlipInView;
+
+    /**
+     * Whether the property flip in progress turns the card forwards (to
+     * the back, or a later face) or backwards
+     */
+    private boolean mFlipForwards;
+
+    /**
+     * The face from the {@link FaceProvider} being turned away by a legacy
+     * flip Animation, which is kept until the Animation ends, or null
+     */
+    private View mLegacyFlipOutView;
+
+    /**
+     * Releases the face turned away by a legacy flip once its Animation
+     * has ended, if it is no longer resident
+     */
+    private final Runnable mLegacyFlipOutEndRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mLegacyFlipOutView = null;
+            if (mFaceProvider != null) {
+                updateResidentFaces();
+            }
+        }
+    };
+
+    /**
+     * The face restored from a saved state while the faces were still being
+     * inflated asynchronously, or -1
+     */
+    private int mPendingRestoredFace = -1;
+
+    /**
+     * Switches to the new face once the old one has been turned away
+     */
+    private final AnimatorListenerAdapter mFlipOutListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (mFlipOutView != null) {
+                onFlipOutEnd();
+            }
+        }
+    };
+
+    /**
+     * Removes the hardware layer once the new face has been turned in
+     */
+    private final AnimatorListenerAdapter mFlipInListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            if (mFlipInView != null) {
+                View inView = mFlipInView;
+                mFlipOutView = null;
+                mFlipInView = null;
+                inView.setLayerType(LAYER_TYPE_NONE, null);
+                if (mFaceProvider != null) {
+                    updateResidentFaces();  // The old face can now be released
+                }
+            }
+        }
+    };
+
 
     public FlippableView(Context context) {
         this(context, null);
@@ -109,7 +421,7 @@ public class FlippableView extends FrameLayout {
         final TypedArray a = context.obtainStyledAttributes(
                 attrs, R.styleable.FlippableView, defStyleAttr, 0);
 
-        initializeView(a);
+        initializeView(a, attrs == null);
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
@@ -128,7 +440,7 @@ public class FlippableView extends FrameLayout {
         final TypedArray a = context.obtainStyledAttributes(
                 attrs, R.styleable.FlippableView, defStyleAttr, defStyleRes);
 
-        initializeView(a);
+        initializeView(a, attrs == null);
     }
 
 
@@ -137,35 +449,58 @@ public class FlippableView extends FrameLayout {
      *
      * @param a The {@link android.content.res.TypedArray} passed from the
      *          constructor(s) used to retrieve XML attributes
+     * @param setDefaultLayoutParams Whether this widget should be given
+     *                               default layout parameters. This is
+     *                               only done when it is created in code,
+     *                               as otherwise they are supplied by the
+     *                               parent from the XML attributes.
      */
-    private void initializeView(final TypedArray a) {
+    private void initializeView(final TypedArray a, boolean setDefaultLayoutParams) {
         LayoutInflater inflater = LayoutInflater.from(mContext);
 
+        int[] viewResIds = new int[] {
+                a.getResourceId(R.styleable.FlippableView_viewFront, -1),
+                a.getResourceId(R.styleable.FlippableView_viewBack, -1)};
+        boolean asyncInflation = a.getBoolean(R.styleable.FlippableView_asyncInflation, false);
+
+        mPlaceholderView = new View(mContext);
+        mPlaceholderView.setMinimumHeight(
+                a.getDimensionPixelSize(R.styleable.FlippableView_placeholderHeight, 0));
+        mFlipAnimation = a.getInt(R.styleable.FlippableView_flipAnimation, FLIP_ANIMATION_LEGACY);
+        mSizingPolicy = a.getInt(R.styleable.FlippableView_sizingPolicy, SIZING_MAX_OF_FACES);
+        mFixedHeight = a.getDimensionPixelSize(R.styleable.FlippableView_fixedHeight, 0);
+        a.recycle();
+
+        if (setDefaultLayoutParams) {
+            setLayoutParams(new LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+
+        if (asyncInflation && mFrontView == null && mBackView == null
+                && viewResIds[0] != -1 && viewResIds[1] != -1) {
+            setFrontAndBackViewsAsync(viewResIds[0], viewResIds[1]);
+            return;
+        }
+
         View[] views = new View[] {mFrontView, mBackView};
-        int[] styleables = new int[] {R.styleable.FlippableView_viewFront,
-                R.styleable.FlippableView_viewBack};
         for (int i = 0; i < 2; i++) {
             if (views[i] != null) {
                 continue;
             }
 
-            int viewResId = a.getResourceId(styleables[i], -1);
-            if (viewResId == -1) {
+            if (viewResIds[i] == -1) {
                 Log.d(LOG_TAG, "Front and/or back view not set yet (via constructor " +
                         "or XML attribute - will be ignored for now)");
                 views[i] = null;
             } else {
-                views[i] = inflater.inflate(viewResId, null);
+                views[i] = inflater.inflate(viewResIds[i], null);
             }
         }
-        a.recycle();
-
-        inflater.inflate(R.layout.widget_flippable_view, this, true);
-        setLayoutParams(new LayoutParams(
-                ViewGroup.LayoutParams.MATCH_PARENT,
-                ViewGroup.LayoutParams.WRAP_CONTENT));
-
-        mViewFlipper = (ViewFlipper) getChildAt(0);
+        mFrontView = views[0];
+        mBackView = views[1];
+        mFrontViewType = mFrontView != null && viewResIds[0] != -1 ? viewResIds[0] : 0;
+        mBackViewType = mBackView != null && viewResIds[1] != -1 ? viewResIds[1] : 0;
 
         if (mFrontView != null && mBackView != null) {
             updateFrontAndBack();
@@ -177,36 +512,71 @@ public class FlippableView extends FrameLayout {
      * Updates both sides of the card/widget by removing both Views, and
      * re-adding them using the global variables.
      *
-     * Listeners for click callbacks are set to these views, and they are
-     * made sure to have the same height (as a piece of card could not be
-     * longer on one side).
+     * Listeners for click callbacks are set to these views. Their heights
+     * are matched when measuring (see {@link #onMeasure(int, int)}).
      */
     private void updateFrontAndBack() {
-        mViewFlipper.removeAllViews();
+        endPropertyFlip();
+        removeAllFaces();
+        cancelBackViewRelease();
 
-        OnClickListener onClickListener = new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                flip();
-            }
-        };
         View[] views = new View[] {mFrontView, mBackView};
         for (int i = 0; i < 2; i++) {
-            views[i].setOnClickListener(onClickListener);
-            mViewFlipper.addView(views[i]);
+            if (views[i] == null) {
+                continue;  // The back View will be created when needed
+            }
+            views[i].setOnClickListener(mFlipOnClickListener);
+            addFace(views[i], i == 0);
         }
         mIsBackShowing = false;
+    }
 
-        mViewFlipper.getViewTreeObserver().addOnGlobalLayoutListener(new ViewTreeObserver.OnGlobalLayoutListener() {
-            @Override
-            public void onGlobalLayout() {
-                int flipperHeight = mViewFlipper.getHeight();
-                mFrontView.setMinimumHeight(flipperHeight);
-                mBackView.setMinimumHeight(flipperHeight);
-            }
-        });
+    /**
+     * Adds a side of the card/widget (or the placeholder View), either
+     * displayed or hidden
+     */
+    private void addFace(View face, boolean displayed) {
+        face.setVisibility(displayed ? VISIBLE : GONE);
+        mFaceContainer.addView(face);
+        if (displayed) {
+            showFace(face, false);
+        }
+    }
+
+    private void removeAllFaces() {
+        mFaceContainer.removeAllViews();
+        mDisplayedFace = null;
     }
 
+    /**
+     * Displays one side of the card/widget (or the placeholder View), and
+     * hides the others. This toggles their visibility, starting the legacy
+     * flip Animations on the Views being shown and hidden if animated.
+     */
+    private void showFace(View face, boolean animate) {
+        mDisplayedFace = face;
+        if (mViewFlipper != null) {
+            setFlipperAnimations(animate);
+            mViewFlipper.setDisplayedChild(mViewFlipper.indexOfChild(face));
+            return;
+        }
+
+        final int count = getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            if (child == face) {
+                if (animate) {
+                    child.startAnimation(getFlipAnimations().getInAnimation());
+                }
+                child.setVisibility(VISIBLE);
+            } else if (child.getVisibility() != GONE) {
+                if (animate) {
+                    child.startAnimation(getFlipAnimations().getOutAnimation());
+                }
+                child.setVisibility(GONE);
+            }
+        }
+    }
 
     /**
      * Flips the widget so that it displays the View on the opposite
@@ -225,128 +595,1301 @@ public class FlippableView extends FrameLayout {
      * side to what is currently being displayed. Whether or not it
      * animates depends on the parameter passed.
      *
+     * With a {@link FaceProvider}, this displays the next face. From the
+     * last face, it only returns to the first in carousel mode (see
+     * {@link #setCarouselMode(boolean)}).
+     *
      * @param animate Whether or not the flip should be animated
      *
      * @see #flip()
      */
     public void flip(boolean animate) {
-        if (mFrontView == null || mBackView == null) {
+        if (mPendingInflations > 0) {
+            return;  // The Views are still being inflated
+        }
+        if (mFaceProvider != null) {
+            int next = mCurrentFace + 1;
+            if (next < mFaces.length) {
+                flipToFace(next, animate, true);
+            } else if (mCarouselMode && mFaces.length > 1) {
+                flipToFace(0, animate, true);
+            }
+            return;
+        }
+        if (mFrontView == null || (mBackView == null && mBackViewProvider == null)) {
             throw new NullPointerException("You must specify a front and back view for the " +
                     "FlippableView, through either a constructor, XML attribute, or method");
         }
+        // Stop any flip still running, so rapid flips restart the same
+        // animations instead of stacking new ones
+        endPropertyFlip();
+        mFrontView.clearAnimation();
+        if (mBackView != null) {
+            mBackView.clearAnimation();
+        }
+        final boolean propertyFlip = animate && mFlipAnimation != FLIP_ANIMATION_LEGACY;
 
         if (!mIsBackShowing) {
-            if (mViewFlipper.getDisplayedChild() == 1) {
-                return;  // If there is a child (to the left), stop
+            cancelBackViewRelease();
+            if (mBackView == null) {
+                mBackView = mBackViewProvider.createBackView(this);
+                mBackView.setOnClickListener(mFlipOnClickListener);
+                addFace(mBackView, false);
+            }
+
+            if (mDisplayedFace == mBackView) {
+                return;  // The back is already displayed
             }
 
-            if (animate) {
-                mViewFlipper.setInAnimation(mContext, R.anim.grow_from_middle);
-                mViewFlipper.setOutAnimation(mContext, R.anim.shrink_to_middle);
+            if (propertyFlip) {
+                startPropertyFlip(mFrontView, mBackView, true);
+            } else {
+                showFace(mBackView, animate);
             }
-            mViewFlipper.showPrevious();  // Display previous screen
         } else {
-            if (mViewFlipper.getDisplayedChild() == 0) {
-                return;  // If there aren't any other children, stop
+            if (mDisplayedFace == mFrontView) {
+                return;  // The front is already displayed
+            }
+
+            if (propertyFlip) {
+                startPropertyFlip(mBackView, mFrontView, false);
+            } else {
+                showFace(mFrontView, animate);
             }
 
-            if (animate) {
-                mViewFlipper.setInAnimation(mContext, R.anim.grow_from_middle);
-                mViewFlipper.setOutAnimation(mContext, R.anim.shrink_to_middle);
+            if (mBackViewProvider != null && mBackViewReleaseDelay >= 0) {
+                mBackViewReleaseTime = SystemClock.uptimeMillis() + mBackViewReleaseDelay;
+                postDelayed(mReleaseBackViewRunnable, mBackViewReleaseDelay);
             }
-            mViewFlipper.showNext();  // Display next screen
         }
 
         mIsBackShowing = !mIsBackShowing;
     }
 
-
     /**
-     * @return the View used as the front of the card/widget
+     * Flips the widget so that it displays the face at an index, animating
+     * depending on {@link #mAnimate}.
+     *
+     * @param index The index of the face to display. Without a
+     *              {@link FaceProvider}, this is 0 for the front and 1 for
+     *              the back.
+     *
+     * @see #flipTo(int, boolean)
      */
-    public View getFrontView() {
-        return mFrontView;
+    public void flipTo(int index) {
+        flipTo(index, mAnimate);
     }
 
     /**
-     * @return the View used as the back of the card/widget
+     * Flips the widget so that it displays the face at an index.
+     *
+     * @param index The index of the face to display. Without a
+     *              {@link FaceProvider}, this is 0 for the front and 1 for
+     *              the back.
+     * @param animate Whether or not the flip should be animated
+     * @throws IndexOutOfBoundsException if there is no face at the index
+     *
+     * @see #getDisplayedFaceIndex()
      */
-    public View getBackView() {
-        return mBackView;
+    public void flipTo(int index, boolean animate) {
+        if (index < 0 || index >= getFaceCount()) {
+            throw new IndexOutOfBoundsException("There is no face at index " + index);
+        }
+        if (mFaceProvider == null) {
+            if ((index == 1) != mIsBackShowing) {
+                flip(animate);
+            }
+        } else if (mPendingInflations == 0) {
+            flipToFace(index, animate, index > mCurrentFace);
+        }
     }
 
     /**
-     * @return the ViewFlipper associated with this widget
+     * Displays a face from the {@link FaceProvider}, creating it if needed,
+     * and releases faces which are no longer near the displayed face
      */
-    public ViewFlipper getViewFlipper() {
-        return mViewFlipper;
+    private void flipToFace(int index, boolean animate, boolean forwards) {
+        endPropertyFlip();
+        removeCallbacks(mLegacyFlipOutEndRunnable);
+        mLegacyFlipOutView = null;
+        for (View face : mFaces) {
+            if (face != null) {
+                face.clearAnimation();
+            }
+        }
+        if (index == mCurrentFace) {
+            return;
+        }
+
+        final View outView = mFaces[mCurrentFace];
+        mCurrentFace = index;
+        final View inView = obtainProvidedFace(index);
+
+        if (animate && mFlipAnimation != FLIP_ANIMATION_LEGACY && outView != null) {
+            startPropertyFlip(outView, inView, forwards);
+        } else {
+            showFace(inView, animate);
+            if (animate && outView != null) {
+                mLegacyFlipOutView = outView;
+                postDelayed(mLegacyFlipOutEndRunnable, getFlipAnimations().getDuration());
+            }
+        }
+        updateResidentFaces();
     }
 
     /**
-     * @return whether or not the back side of the card is currently
-     * being displayed
+     * @return the face from the {@link FaceProvider} at an index, creating
+     * it (hidden) if it is not currently kept
      */
-    public boolean isBackShowing() {
-        return mIsBackShowing;
+    private View obtainProvidedFace(int index) {
+        View face = mFaces[index];
+        if (face == null) {
+            face = mFaceProvider.createFace(this, index);
+            face.setOnClickListener(mFlipOnClickListener);
+            mFaces[index] = face;
+            addFace(face, false);
+        }
+        return face;
     }
 
     /**
-     * Changes the View shown on the front side of the card
-     *
-     * @param frontView The View for the front side of the card
-     *
-     * @see #getFrontView()
-     * @see #setBackView(View)
-     * @see #setFrontAndBackViews(View, View)
-     * @attr ref R.styleable#FlippableView_viewFront
+     * @return whether the face at an index should be kept, because it is
+     * within {@link #mFaceResidency} faces of the displayed face
      */
-    public void setFrontView(View frontView) {
-        mFrontView = frontView;
-        updateFrontAndBack();
+    private boolean isFaceResident(int index) {
+        int distance = Math.abs(index - mCurrentFace);
+        if (mCarouselMode) {
+            distance = Math.min(distance, mFaces.length - distance);
+        }
+        return distance <= mFaceResidency;
     }
 
     /**
-     * Changes the View shown on the back side of the card
-     *
-     * @param backView The view for the back side of the card
-     *
-     * @see #getBackView()
-     * @see #setFrontView(View)
-     * @see #setFrontAndBackViews(View, View)
-     * @attr ref R.styleable#FlippableView_viewBack
+     * Creates the faces near the displayed face, and releases the others.
+     * A face being turned away by a property flip or a legacy flip
+     * Animation is kept until the flip ends.
      */
-    public void setBackView(View backView) {
-        mBackView = backView;
-        updateFrontAndBack();
+    private void updateResidentFaces() {
+        for (int i = 0; i < mFaces.length; i++) {
+            if (isFaceResident(i)) {
+                obtainProvidedFace(i);
+            } else if (mFaces[i] != null && mFaces[i] != mFlipOutView
+                    && mFaces[i] != mLegacyFlipOutView) {
+                View face = mFaces[i];
+                mFaces[i] = null;
+                releaseProvidedFace(i, face, mFaceProvider);
+            }
+        }
     }
 
-    /**
-     * Changes the View shown on both sides of the card
-     *
-     * @param frontView The View for the front side of the card
-     * @param backView The View for the back side of the card
-     *
-     * @see #setFrontView(View)
-     * @see #setBackView(View)
-     * @attr ref R.styleable#FlippableView_viewFront
-     * @attr ref R.styleable#FlippableView_viewBack
-     */
-    public void setFrontAndBackViews(View frontView, View backView) {
-        mFrontView = frontView;
-        mBackView = backView;
-        updateFrontAndBack();
+    private void releaseProvidedFace(int index, View face, FaceProvider faceProvider) {
+        face.setOnClickListener(null);
+        face.clearAnimation();
+        resetFlipProperties(face);
+        mFaceContainer.removeView(face);
+        if (face == mDisplayedFace) {
+            mDisplayedFace = null;
+        }
+        faceProvider.onFaceReleased(this, index, face);
     }
 
     /**
-     * Removes the front and back Views from the card/widget
-     *
-     * @see #setFrontAndBackViews(View, View)
+     * Releases all faces created by the {@link FaceProvider}, and stops
+     * using it
      */
-    public void removeFrontAndBack() {
-        mViewFlipper.removeAllViews();
+    private void releaseProvidedFaces() {
+        if (mFaceProvider == null) {
+            return;
+        }
+        endPropertyFlip();
+        removeCallbacks(mLegacyFlipOutEndRunnable);
+        mLegacyFlipOutView = null;
+        final FaceProvider faceProvider = mFaceProvider;
+        final View[] faces = mFaces;
+        mFaceProvider = null;
+        mFaces = null;
+        for (int i = 0; i < faces.length; i++) {
+            if (faces[i] != null) {
+                releaseProvidedFace(i, faces[i], faceProvider);
+            }
+        }
     }
 
-
+    /**
+     * Sets the compatibility ViewFlipper's animations to the cached legacy
+     * Animations, or removes them if the flip should not be animated
+     */
+    private void setFlipperAnimations(boolean animate) {
+        if (animate) {
+            FlipAnimationCache flipAnimations = getFlipAnimations();
+            mViewFlipper.setInAnimation(flipAnimations.getInAnimation());
+            mViewFlipper.setOutAnimation(flipAnimations.getOutAnimation());
+        } else {
+            mViewFlipper.setInAnimation(null);
+            mViewFlipper.setOutAnimation(null);
+        }
+    }
+
+    private FlipAnimationCache getFlipAnimations() {
+        if (mFlipAnimations == null) {
+            mFlipAnimations = new FlipAnimationCache(mContext);
+        }
+        return mFlipAnimations;
+    }
+
+    /**
+     * Starts turning the card from one face to the other by animating View
+     * properties. Both faces are drawn into hardware layers for the
+     * duration of the flip, so each frame only changes how the layers are
+     * composited, and the faces do not need to be redrawn.
+     *
+     * <p>
+     * The old face is turned away first, then the new face is shown in its
+     * place and turned in.
+     * </p>
+     */
+    private void startPropertyFlip(View outView, View inView, boolean forwards) {
+        mFlipOutView = outView;
+        mFlipInView = inView;
+        mFlipForwards = forwards;
+
+        outView.setLayerType(LAYER_TYPE_HARDWARE, null);
+        inView.setLayerType(LAYER_TYPE_HARDWARE, null);
+        if (mFlipAnimation == FLIP_ANIMATION_ROTATION) {
+            float cameraDistance = CAMERA_DISTANCE_DP * getResources().getDisplayMetrics().density;
+            outView.setCameraDistance(cameraDistance);
+            inView.setCameraDistance(cameraDistance);
+        }
+
+        FlipAnimationCache flipAnimations = getFlipAnimations();
+        Interpolator interpolator = flipAnimations.getInterpolator();
+        ViewPropertyAnimator animator = outView.animate()
+                .setDuration(flipAnimations.getDuration())
+                .setInterpolator(interpolator == null ? FLIP_OUT_INTERPOLATOR : interpolator)
+                .setListener(mFlipOutListener);
+        if (mFlipAnimation == FLIP_ANIMATION_ROTATION) {
+            animator.rotationY(forwards ? 90 : -90);
+        } else {
+            animator.scaleY(0);
+        }
+    }
+
+    /**
+     * Called when the old face has been turned away, to show the new face
+     * and start turning it in
+     */
+    private void onFlipOutEnd() {
+        final View outView = mFlipOutView;
+        final View inView = mFlipInView;
+
+        showFace(inView, false);
+        resetFlipProperties(outView);
+
+        FlipAnimationCache flipAnimations = getFlipAnimations();
+        Interpolator interpolator = flipAnimations.getInterpolator();
+        ViewPropertyAnimator animator = inView.animate()
+                .setDuration(flipAnimations.getDuration())
+                .setInterpolator(interpolator == null ? FLIP_IN_INTERPOLATOR : interpolator)
+                .setListener(mFlipInListener);
+        if (mFlipAnimation == FLIP_ANIMATION_ROTATION) {
+            // The card is turning the same way, so the new face starts
+            // from the opposite side
+            inView.setRotationY(mFlipForwards ? -90 : 90);
+            animator.rotationY(0);
+        } else {
+            inView.setScaleY(0);
+            animator.scaleY(1);
+        }
+    }
+
+    /**
+     * Jumps to the end of a property flip in progress, if there is one
+     */
+    private void endPropertyFlip() {
+        if (mFlipInView == null) {
+            return;
+        }
+        final View outView = mFlipOutView;
+        final View inView = mFlipInView;
+        mFlipOutView = null;
+        mFlipInView = null;
+
+        outView.animate().setListener(null).cancel();
+        inView.animate().setListener(null).cancel();
+        resetFlipProperties(outView);
+        resetFlipProperties(inView);
+        if (inView.getParent() == mFaceContainer) {
+            showFace(inView, false);
+        }
+        if (mFaceProvider != null) {
+            updateResidentFaces();  // The old face can now be released
+        }
+    }
+
+    private static void resetFlipProperties(View face) {
+        face.setRotationY(0);
+        face.setScaleY(1);
+        face.setLayerType(LAYER_TYPE_NONE, null);
+    }
+
+    /**
+     * Cancels a scheduled release of the back View
+     */
+    private void cancelBackViewRelease() {
+        removeCallbacks(mReleaseBackViewRunnable);
+        mBackViewReleaseTime = 0;
+    }
+
+    /**
+     * Removes the back View created by the {@link BackViewProvider}, if the
+     * front is showing. It will be created again when next needed.
+     */
+    private void releaseBackView() {
+        endPropertyFlip();
+        if (mIsBackShowing || mBackView == null || mBackViewProvider == null) {
+            return;
+        }
+        View backView = mBackView;
+        mBackView = null;
+        backView.setOnClickListener(null);
+        mFaceContainer.removeView(backView);
+        mBackViewProvider.onBackViewReleased(this, backView);
+    }
+
+    /**
+     * Measures the faces together, so that the card reaches its final size
+     * in a single measure pass. The height of the faces is chosen by the
+     * sizing policy, and then all faces are measured again at exactly that
+     * height so that they fill the card.
+     */
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (mDisplayedFace == null || mDisplayedFace == mPlaceholderView) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+        if (mViewFlipper != null) {
+            measureWithViewFlipper(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        final int contentHeight = mSizingPolicy == SIZING_FIXED
+                ? mFixedHeight : measureFacesHeight(this, widthMeasureSpec);
+        final int height = resolveSize(
+                contentHeight + getPaddingTop() + getPaddingBottom(), heightMeasureSpec);
+
+        final int contentWidth = fillFaces(this, widthMeasureSpec, height, false);
+        final int width = resolveSize(
+                contentWidth + getPaddingLeft() + getPaddingRight(), widthMeasureSpec);
+
+        if (MeasureSpec.getMode(widthMeasureSpec) != MeasureSpec.EXACTLY) {
+            // Faces matching the width of the card can now be given it
+            fillFaces(this, MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY), height, true);
+        }
+        setMeasuredDimension(width, height);
+    }
+
+    /**
+     * Measures the card when the faces are inside the compatibility
+     * ViewFlipper
+     */
+    private void measureWithViewFlipper(int widthMeasureSpec, int heightMeasureSpec) {
+        final MarginLayoutParams flipperParams =
+                (MarginLayoutParams) mViewFlipper.getLayoutParams();
+        final int horizontalInsets = getPaddingLeft() + getPaddingRight()
+                + flipperParams.leftMargin + flipperParams.rightMargin;
+        final int verticalInsets = getPaddingTop() + getPaddingBottom()
+                + flipperParams.topMargin + flipperParams.bottomMargin;
+
+        final int flipperWidthSpec = getChildMeasureSpec(
+                widthMeasureSpec, horizontalInsets, flipperParams.width);
+
+        int flipperHeight = mSizingPolicy == SIZING_FIXED
+                ? mFixedHeight
+                : measureFacesHeight(mViewFlipper, flipperWidthSpec)
+                        + mViewFlipper.getPaddingTop() + mViewFlipper.getPaddingBottom();
+
+        final int height = resolveSize(flipperHeight + verticalInsets, heightMeasureSpec);
+        flipperHeight = Math.max(0, height - verticalInsets);
+        mViewFlipper.measure(flipperWidthSpec,
+                MeasureSpec.makeMeasureSpec(flipperHeight, MeasureSpec.EXACTLY));
+
+        final int flipperWidth = mViewFlipper.getMeasuredWidth();
+        fillFaces(mViewFlipper, MeasureSpec.makeMeasureSpec(flipperWidth, MeasureSpec.EXACTLY),
+                flipperHeight, false);
+
+        setMeasuredDimension(
+                resolveSize(flipperWidth + horizontalInsets, widthMeasureSpec), height);
+    }
+
+    /**
+     * Measures the faces at the heights their contents need
+     *
+     * @return the height (including margins) that the sizing policy
+     * chooses for the faces
+     */
+    private int measureFacesHeight(ViewGroup parent, int parentWidthSpec) {
+        if (mSizingPolicy == SIZING_FRONT_ONLY) {
+            View front = getFrontView();
+            if (front == null || front.getParent() != parent) {
+                front = mDisplayedFace;
+            }
+            return measureFaceHeight(front, parentWidthSpec, parent);
+        }
+
+        int height = 0;
+        final int count = parent.getChildCount();
+        for (int i = 0; i < count; i++) {
+            height = Math.max(height,
+                    measureFaceHeight(parent.getChildAt(i), parentWidthSpec, parent));
+        }
+        return height;
+    }
+
+    /**
+     * Measures all faces again so that they fill the height of their
+     * parent
+     *
+     * @param matchParentOnly Whether only faces with a width of
+     *                        {@link LayoutParams#MATCH_PARENT} are measured
+     * @return the width of the widest face, including its margins
+     */
+    private static int fillFaces(ViewGroup parent, int parentWidthSpec, int parentHeight,
+                                 boolean matchParentOnly) {
+        int width = 0;
+        final int count = parent.getChildCount();
+        for (int i = 0; i < count; i++) {
+            final View face = parent.getChildAt(i);
+            if (!matchParentOnly || face.getLayoutParams().width == LayoutParams.MATCH_PARENT) {
+                width = Math.max(width, fillFace(face, parentWidthSpec, parentHeight, parent));
+            }
+        }
+        return width;
+    }
+
+    /**
+     * Measures a face at the height its contents need
+     *
+     * @param parentWidthSpec The width measure spec of the face's parent
+     * @return the height of the face, including its margins
+     */
+    private static int measureFaceHeight(View face, int parentWidthSpec, ViewGroup parent) {
+        final ViewGroup.LayoutParams params = face.getLayoutParams();
+        final int widthSpec = getChildMeasureSpec(parentWidthSpec,
+                parent.getPaddingLeft() + parent.getPaddingRight() + getHorizontalMargins(params),
+                params.width);
+        final int heightSpec = params.height >= 0
+                ? MeasureSpec.makeMeasureSpec(params.height, MeasureSpec.EXACTLY)
+                : MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        face.measure(widthSpec, heightSpec);
+        return face.getMeasuredHeight() + getVerticalMargins(params);
+    }
+
+    /**
+     * Measures a face again so that it fills the height of its parent.
+     * This is the measurement used when the face is laid out.
+     *
+     * @param parentWidthSpec The width measure spec of the face's parent
+     * @param parentHeight The height of the face's parent, including its
+     *                     padding
+     * @return the width of the face, including its margins
+     */
+    private static int fillFace(View face, int parentWidthSpec, int parentHeight,
+                                ViewGroup parent) {
+        final ViewGroup.LayoutParams params = face.getLayoutParams();
+        final int horizontalMargins = getHorizontalMargins(params);
+        final int widthSpec = getChildMeasureSpec(parentWidthSpec,
+                parent.getPaddingLeft() + parent.getPaddingRight() + horizontalMargins,
+                params.width);
+        final int faceHeight = parentHeight - parent.getPaddingTop()
+                - parent.getPaddingBottom() - getVerticalMargins(params);
+        face.measure(widthSpec,
+                MeasureSpec.makeMeasureSpec(Math.max(0, faceHeight), MeasureSpec.EXACTLY));
+        return face.getMeasuredWidth() + horizontalMargins;
+    }
+
+    private static int getHorizontalMargins(ViewGroup.LayoutParams params) {
+        if (params instanceof MarginLayoutParams) {
+            MarginLayoutParams marginParams = (MarginLayoutParams) params;
+            return marginParams.leftMargin + marginParams.rightMargin;
+        }
+        return 0;
+    }
+
+    private static int getVerticalMargins(ViewGroup.LayoutParams params) {
+        if (params instanceof MarginLayoutParams) {
+            MarginLayoutParams marginParams = (MarginLayoutParams) params;
+            return marginParams.topMargin + marginParams.bottomMargin;
+        }
+        return 0;
+    }
+
+    /**
+     * Saves which face is displayed
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState savedState = new SavedState(super.onSaveInstanceState());
+        savedState.mDisplayedFace = getDisplayedFaceIndex();
+        return savedState;
+    }
+
+    /**
+     * Displays the saved face without animating, before the first layout.
+     * If the faces are still being inflated, this is done once they are
+     * ready.
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        final int index = savedState.mDisplayedFace;
+        if (mPendingInflations > 0) {
+            mPendingRestoredFace = index;
+        } else if (index < getFaceCount() && index != getDisplayedFaceIndex()
+                && (mFaceProvider != null || (mFrontView != null
+                        && (mBackView != null || mBackViewProvider != null)))) {
+            flipTo(index, false);
+        }
+    }
+
+    /**
+     * The state of a FlippableView saved across configuration changes
+     */
+    static class SavedState extends BaseSavedState {
+
+        int mDisplayedFace;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            mDisplayedFace = in.readInt();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(mDisplayedFace);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR =
+                new Parcelable.Creator<SavedState>() {
+                    @Override
+                    public SavedState createFromParcel(Parcel in) {
+                        return new SavedState(in);
+                    }
+
+                    @Override
+                    public SavedState[] newArray(int size) {
+                        return new SavedState[size];
+                    }
+                };
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        // Post a release which was pending when the widget was detached
+        // (for example, as a recycled row), with the time that was left
+        if (mBackViewReleaseTime != 0 && !mIsBackShowing) {
+            removeCallbacks(mReleaseBackViewRunnable);
+            postDelayed(mReleaseBackViewRunnable,
+                    Math.max(0, mBackViewReleaseTime - SystemClock.uptimeMillis()));
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // The release time is kept, so it can be posted again when attached
+        removeCallbacks(mReleaseBackViewRunnable);
+        endPropertyFlip();
+        if (mLegacyFlipOutView != null) {
+            removeCallbacks(mLegacyFlipOutEndRunnable);
+            mLegacyFlipOutEndRunnable.run();
+        }
+    }
+
+
+    /**
+     * @return the View used as the front of the card/widget. If a
+     * {@link FaceProvider} is used, this is the first face, which is null
+     * while it is not kept (see {@link #setFaceResidency(int)}).
+     */
+    public View getFrontView() {
+        if (mFaceProvider != null) {
+            return mFaces[0];
+        }
+        return mFrontView;
+    }
+
+    /**
+     * @return the View used as the back of the card/widget. If a
+     * {@link BackViewProvider} is used, this is null until the card is
+     * first flipped, and after the back View has been released. If a
+     * {@link FaceProvider} is used, this is the second face, which is null
+     * while it is not kept (or if there is only one face).
+     */
+    public View getBackView() {
+        if (mFaceProvider != null) {
+            return mFaces.length > 1 ? mFaces[1] : null;
+        }
+        return mBackView;
+    }
+
+    /**
+     * Returns a ViewFlipper containing the sides of the card/widget.
+     *
+     * <p>
+     * FlippableView no longer uses a ViewFlipper: the sides are direct
+     * children, and are shown and hidden by changing their visibility. For
+     * compatibility, calling this method moves the sides into a
+     * ViewFlipper, which is then used for the rest of this widget's
+     * lifetime. This adds a level to the View hierarchy, so it should be
+     * avoided.
+     * </p>
+     *
+     * @return the ViewFlipper associated with this widget
+     * @deprecated The sides of the card are no longer inside a ViewFlipper.
+     * Use {@link #getFrontView()}, {@link #getBackView()} and
+     * {@link #isBackShowing()} instead.
+     */
+    @Deprecated
+    public ViewFlipper getViewFlipper() {
+        if (mViewFlipper == null) {
+            endPropertyFlip();
+            final View displayedFace = mDisplayedFace;
+
+            final ViewFlipper viewFlipper = new ViewFlipper(mContext);
+            while (getChildCount() > 0) {
+                View child = getChildAt(0);
+                child.clearAnimation();
+                removeViewAt(0);
+                viewFlipper.addView(child);
+            }
+            addView(viewFlipper, new LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+
+            mViewFlipper = viewFlipper;
+            mFaceContainer = viewFlipper;
+            if (displayedFace != null) {
+                showFace(displayedFace, false);
+            }
+        }
+        return mViewFlipper;
+    }
+
+    /**
+     * @return whether or not the back side of the card is currently
+     * being displayed
+     */
+    public boolean isBackShowing() {
+        if (mFaceProvider != null) {
+            return mCurrentFace != 0;
+        }
+        return mIsBackShowing;
+    }
+
+    /**
+     * @return the number of faces of the card: the number from the
+     * {@link FaceProvider} if one is used, or 2 for a front and back
+     */
+    public int getFaceCount() {
+        return mFaceProvider == null ? 2 : mFaces.length;
+    }
+
+    /**
+     * @return the index of the face currently displayed. Without a
+     * {@link FaceProvider}, this is 0 for the front and 1 for the back.
+     *
+     * @see #flipTo(int, boolean)
+     */
+    public int getDisplayedFaceIndex() {
+        if (mFaceProvider != null) {
+            return mCurrentFace;
+        }
+        return mIsBackShowing ? 1 : 0;
+    }
+
+    /**
+     * @param index The index of the face
+     * @return the face at the index, or null if it is not currently kept
+     * (because it is not near the displayed face)
+     *
+     * @see #setFaceProvider(FaceProvider)
+     */
+    public View getFaceView(int index) {
+        if (mFaceProvider == null) {
+            return index == 0 ? mFrontView : index == 1 ? mBackView : null;
+        }
+        return index >= 0 && index < mFaces.length ? mFaces[index] : null;
+    }
+
+    /**
+     * Interface definition for creating the faces of a FlippableView with
+     * any number of faces.
+     *
+     * @see #setFaceProvider(FaceProvider)
+     */
+    public interface FaceProvider {
+
+        /**
+         * @return the number of faces of the card
+         */
+        int getFaceCount();
+
+        /**
+         * Creates the View for a face of the card. This is called when the
+         * face, or a face next to it, is about to be displayed.
+         *
+         * @param flippableView The FlippableView which needs the face
+         * @param index The index of the face
+         * @return the View for the face
+         */
+        View createFace(FlippableView flippableView, int index);
+
+        /**
+         * Called when a face is no longer kept because it is not near the
+         * displayed face. The View could be kept for reuse, for example in
+         * a {@link FaceViewPool}.
+         *
+         * @param flippableView The FlippableView which used the face
+         * @param index The index of the face
+         * @param face The View which has been removed
+         */
+        void onFaceReleased(FlippableView flippableView, int index, View face);
+    }
+
+    /**
+     * Gives the card any number of faces, created by a provider. The first
+     * face is displayed, and each flip moves to the next face. Only the
+     * displayed face and the faces within the residency of it are kept;
+     * the others are released, and created again when needed. This
+     * replaces the front and back Views.
+     *
+     * <p>
+     * The number of faces is read from the provider when it is set. With
+     * {@link #SIZING_MAX_OF_FACES}, only the faces currently kept are
+     * measured.
+     * </p>
+     *
+     * @param faceProvider The provider for the faces, or null to stop
+     *                     using one (in which case a front and back View
+     *                     must then be set)
+     *
+     * @see #flipTo(int, boolean)
+     * @see #setFaceResidency(int)
+     * @see #setCarouselMode(boolean)
+     */
+    public void setFaceProvider(FaceProvider faceProvider) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        removeAllFaces();
+        recycleFrontView();
+        recycleBackView();
+        cancelBackViewRelease();
+        mBackViewProvider = null;
+        mIsBackShowing = false;
+        if (faceProvider == null) {
+            return;
+        }
+
+        final int faceCount = faceProvider.getFaceCount();
+        if (faceCount < 1) {
+            throw new IllegalArgumentException("A FaceProvider must have at least one face");
+        }
+        mFaceProvider = faceProvider;
+        mFaces = new View[faceCount];
+        mCurrentFace = 0;
+        showFace(obtainProvidedFace(0), false);
+        updateResidentFaces();
+    }
+
+    /**
+     * @return the provider used to create the faces, or null if the card
+     * has a front and back View
+     */
+    public FaceProvider getFaceProvider() {
+        return mFaceProvider;
+    }
+
+    /**
+     * Sets how many faces either side of the displayed face are kept when
+     * a {@link FaceProvider} is used. Faces further away are released.
+     *
+     * @param neighbours The number of faces either side to keep (0 to only
+     *                   keep the displayed face)
+     *
+     * @see #DEFAULT_FACE_RESIDENCY
+     */
+    public void setFaceResidency(int neighbours) {
+        if (neighbours < 0) {
+            throw new IllegalArgumentException("The face residency cannot be negative");
+        }
+        mFaceResidency = neighbours;
+        if (mFaceProvider != null) {
+            updateResidentFaces();
+        }
+    }
+
+    /**
+     * @return how many faces either side of the displayed face are kept
+     */
+    public int getFaceResidency() {
+        return mFaceResidency;
+    }
+
+    /**
+     * Sets whether the faces from a {@link FaceProvider} wrap around. In
+     * carousel mode, flipping from the last face turns the card forwards
+     * to the first, and the first and last faces are neighbours (so both
+     * are kept near either end). Otherwise, {@link #flip()} does nothing
+     * when the last face is displayed, and {@link #flipTo(int)} must be
+     * used to return to an earlier face.
+     *
+     * @param carouselMode Whether the faces wrap around
+     */
+    public void setCarouselMode(boolean carouselMode) {
+        mCarouselMode = carouselMode;
+        if (mFaceProvider != null) {
+            updateResidentFaces();
+        }
+    }
+
+    /**
+     * @return whether the faces from a {@link FaceProvider} wrap around
+     */
+    public boolean isCarouselMode() {
+        return mCarouselMode;
+    }
+
+    /**
+     * Changes the View shown on the front side of the card
+     *
+     * @param frontView The View for the front side of the card
+     *
+     * @see #getFrontView()
+     * @see #setBackView(View)
+     * @see #setFrontAndBackViews(View, View)
+     * @attr ref R.styleable#FlippableView_viewFront
+     */
+    public void setFrontView(View frontView) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        recycleFrontView();
+        mFrontView = frontView;
+        updateFrontAndBack();
+    }
+
+    /**
+     * Changes the View shown on the back side of the card
+     *
+     * @param backView The view for the back side of the card
+     *
+     * @see #getBackView()
+     * @see #setFrontView(View)
+     * @see #setFrontAndBackViews(View, View)
+     * @attr ref R.styleable#FlippableView_viewBack
+     */
+    public void setBackView(View backView) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        recycleBackView();
+        mBackViewProvider = null;
+        mBackView = backView;
+        updateFrontAndBack();
+    }
+
+    /**
+     * Changes the View shown on both sides of the card
+     *
+     * @param frontView The View for the front side of the card
+     * @param backView The View for the back side of the card
+     *
+     * @see #setFrontView(View)
+     * @see #setBackView(View)
+     * @attr ref R.styleable#FlippableView_viewFront
+     * @attr ref R.styleable#FlippableView_viewBack
+     */
+    public void setFrontAndBackViews(View frontView, View backView) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        recycleFrontView();
+        recycleBackView();
+        mBackViewProvider = null;
+        mFrontView = frontView;
+        mBackView = backView;
+        updateFrontAndBack();
+    }
+
+    /**
+     * Changes the Views shown on both sides of the card, inflating them
+     * from layout resources on a background thread. Until both Views are
+     * ready, the placeholder View is shown (or the front View, once it
+     * has been inflated) and the card cannot be flipped.
+     *
+     * @param frontViewRes The layout resource for the front of the card
+     * @param backViewRes The layout resource for the back of the card
+     *
+     * @see #setOnViewsReadyListener(OnViewsReadyListener)
+     * @see #setPlaceholderView(View)
+     * @see #setFrontAndBackViews(View, View)
+     * @attr ref R.styleable#FlippableView_asyncInflation
+     */
+    public void setFrontAndBackViewsAsync(@LayoutRes int frontViewRes,
+                                          @LayoutRes int backViewRes) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        recycleFrontView();
+        recycleBackView();
+        mBackViewProvider = null;
+        final int generation = mInflationGeneration;
+
+        mFrontView = null;
+        mBackView = null;
+        mPendingInflations = 2;
+        removeAllFaces();
+        addFace(mPlaceholderView, true);
+
+        if (mAsyncInflater == null) {
+            mAsyncInflater = new AsyncLayoutInflater(mContext);
+        }
+        mAsyncInflater.inflate(frontViewRes, mFaceContainer,
+                new AsyncLayoutInflater.OnInflateFinishedListener() {
+                    @Override
+                    public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                        if (generation == mInflationGeneration) {
+                            mFrontView = view;
+                            mFrontViewType = resid;
+                            onViewInflated();
+                        }
+                    }
+                });
+        mAsyncInflater.inflate(backViewRes, mFaceContainer,
+                new AsyncLayoutInflater.OnInflateFinishedListener() {
+                    @Override
+                    public void onInflateFinished(View view, int resid, ViewGroup parent) {
+                        if (generation == mInflationGeneration) {
+                            mBackView = view;
+                            mBackViewType = resid;
+                            onViewInflated();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Called when the front or back View has been inflated asynchronously
+     */
+    private void onViewInflated() {
+        mPendingInflations--;
+        if (mPendingInflations > 0) {
+            if (mFrontView != null) {
+                // Show the front in place of the placeholder while the
+                // back is still being inflated
+                removeAllFaces();
+                addFace(mFrontView, true);
+            }
+            return;
+        }
+
+        updateFrontAndBack();
+        if (mPendingRestoredFace != -1) {
+            flipTo(mPendingRestoredFace, false);
+            mPendingRestoredFace = -1;
+        }
+        if (mOnViewsReadyListener != null) {
+            mOnViewsReadyListener.onViewsReady(this);
+        }
+    }
+
+    /**
+     * Ignores the results of any asynchronous inflation in progress
+     */
+    private void cancelAsyncInflation() {
+        mInflationGeneration++;
+        mPendingRestoredFace = -1;
+        if (mPendingInflations > 0) {
+            mPendingInflations = 0;
+            mFaceContainer.removeView(mPlaceholderView);
+            mDisplayedFace = null;
+        }
+    }
+
+    /**
+     * @return whether or not the front and back Views are ready, i.e. not
+     * still being inflated asynchronously
+     */
+    public boolean areViewsReady() {
+        return mPendingInflations == 0;
+    }
+
+    /**
+     * Sets the View shown while the front and back Views are being
+     * inflated asynchronously. By default, this is an empty View with a
+     * minimum height from the {@code placeholderHeight} attribute.
+     *
+     * @param placeholderView The placeholder View
+     *
+     * @see #setFrontAndBackViewsAsync(int, int)
+     * @attr ref R.styleable#FlippableView_placeholderHeight
+     */
+    public void setPlaceholderView(View placeholderView) {
+        if (mPendingInflations > 0 && mPlaceholderView == mDisplayedFace) {
+            mFaceContainer.removeView(mPlaceholderView);
+            addFace(placeholderView, true);
+        }
+        mPlaceholderView = placeholderView;
+    }
+
+    /**
+     * Interface definition for a callback to be invoked when the front and
+     * back Views of this FlippableView have finished being inflated
+     * asynchronously.
+     */
+    public interface OnViewsReadyListener {
+
+        /**
+         * Callback method to be invoked when the front and back Views have
+         * been inflated and added to the FlippableView, so it can now be
+         * flipped.
+         *
+         * @param flippableView The FlippableView whose Views are ready
+         */
+        void onViewsReady(FlippableView flippableView);
+    }
+
+    /**
+     * Register a callback to be invoked when asynchronously inflated front
+     * and back Views are ready. If they are already ready, the callback is
+     * invoked immediately.
+     *
+     * @param onViewsReadyListener The callback that will run
+     *
+     * @see #setFrontAndBackViewsAsync(int, int)
+     */
+    public void setOnViewsReadyListener(OnViewsReadyListener onViewsReadyListener) {
+        mOnViewsReadyListener = onViewsReadyListener;
+        if (onViewsReadyListener != null && mPendingInflations == 0
+                && mFrontView != null && mBackView != null) {
+            onViewsReadyListener.onViewsReady(this);
+        }
+    }
+
+    /**
+     * Interface definition for creating the back View of a FlippableView
+     * only when it is needed.
+     *
+     * @see #setBackViewProvider(BackViewProvider)
+     */
+    public interface BackViewProvider {
+
+        /**
+         * Creates the View for the back of the card. This is called the
+         * first time the card is flipped, and again after the previous back
+         * View has been released.
+         *
+         * @param flippableView The FlippableView which needs a back View
+         * @return the View for the back side of the card
+         */
+        View createBackView(FlippableView flippableView);
+
+        /**
+         * Called when a back View is no longer needed because the front has
+         * been showing for a while. The View could be kept for reuse, for
+         * example by another FlippableView or in a {@link FaceViewPool}.
+         *
+         * @param flippableView The FlippableView which used the back View
+         * @param backView The back View which has been removed
+         */
+        void onBackViewReleased(FlippableView flippableView, View backView);
+    }
+
+    /**
+     * Sets a provider which creates the back View the first time the card
+     * is flipped, instead of it being created up front. Once the card has
+     * been flipped back to the front, the back View is released again after
+     * the release delay. This replaces any existing back View.
+     *
+     * <p>
+     * Note that until the back View has been created, the card's height is
+     * based on the front View alone.
+     * </p>
+     *
+     * @param backViewProvider The provider for the back View, or null to
+     *                         stop using one (in which case a back View
+     *                         must then be set)
+     *
+     * @see #setBackViewReleaseDelay(long)
+     */
+    public void setBackViewProvider(BackViewProvider backViewProvider) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        recycleBackView();
+        mBackViewProvider = backViewProvider;
+        mBackView = null;
+        if (mFrontView != null) {
+            updateFrontAndBack();
+        }
+    }
+
+    /**
+     * @return the provider used to create the back View, or null if the
+     * back View is set directly
+     */
+    public BackViewProvider getBackViewProvider() {
+        return mBackViewProvider;
+    }
+
+    /**
+     * Sets how long the front of the card must be showing before a back
+     * View created by the {@link BackViewProvider} is released.
+     *
+     * @param delayMillis The delay in milliseconds, or
+     *                    {@link #RELEASE_NEVER} to keep the back View once
+     *                    it has been created
+     *
+     * @see #setBackViewProvider(BackViewProvider)
+     */
+    public void setBackViewReleaseDelay(long delayMillis) {
+        mBackViewReleaseDelay = delayMillis;
+    }
+
+    /**
+     * Removes the front and back Views from the card/widget
+     *
+     * @see #setFrontAndBackViews(View, View)
+     */
+    public void removeFrontAndBack() {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        removeAllFaces();
+        recycleFrontView();
+        recycleBackView();
+    }
+
+    /**
+     * Changes the Views shown on both sides of the card to Views inflated
+     * from layout resources. If a {@link FaceViewPool} has been set, the
+     * current Views are returned to it and the new Views are taken from it
+     * where possible, instead of being inflated. If a side already uses a
+     * View from the same layout, that View is kept.
+     *
+     * <p>
+     * The card is reset to show its front. Views taken from the pool keep
+     * their previous contents, so they should be bound again afterwards
+     * through {@link #getFrontView()} and {@link #getBackView()}.
+     * </p>
+     *
+     * @param frontViewRes The layout resource for the front of the card
+     * @param backViewRes The layout resource for the back of the card
+     *
+     * @see #setFaceViewPool(FaceViewPool)
+     * @see #setFrontAndBackViews(View, View)
+     */
+    public void setFrontAndBackLayouts(@LayoutRes int frontViewRes,
+                                       @LayoutRes int backViewRes) {
+        cancelAsyncInflation();
+        releaseProvidedFaces();
+        mBackViewProvider = null;
+        removeAllFaces();
+
+        if (mFrontView == null || mFrontViewType != frontViewRes) {
+            recycleFrontView();
+            mFrontView = obtainFaceView(frontViewRes);
+            mFrontViewType = frontViewRes;
+        }
+        if (mBackView == null || mBackViewType != backViewRes) {
+            recycleBackView();
+            mBackView = obtainFaceView(backViewRes);
+            mBackViewType = backViewRes;
+        }
+        updateFrontAndBack();
+    }
+
+    /**
+     * @return a View from the pool for the layout resource, or a newly
+     * inflated View if there are none
+     */
+    private View obtainFaceView(@LayoutRes int layoutRes) {
+        View view = mFaceViewPool == null ? null : mFaceViewPool.acquire(layoutRes);
+        if (view == null) {
+            view = LayoutInflater.from(mContext).inflate(layoutRes, mFaceContainer, false);
+        }
+        return view;
+    }
+
+    /**
+     * Removes the front View and returns it to the pool, if it came from a
+     * layout resource
+     */
+    private void recycleFrontView() {
+        recycleFaceView(mFrontView, mFrontViewType);
+        mFrontView = null;
+        mFrontViewType = 0;
+    }
+
+    /**
+     * Removes the back View and returns it to the pool, if it came from a
+     * layout resource
+     */
+    private void recycleBackView() {
+        recycleFaceView(mBackView, mBackViewType);
+        mBackView = null;
+        mBackViewType = 0;
+    }
+
+    private void recycleFaceView(View view, int viewType) {
+        if (view == null) {
+            return;
+        }
+        if (view.getParent() == mFaceContainer) {
+            mFaceContainer.removeView(view);
+        }
+        if (mFaceViewPool == null || viewType == 0) {
+            return;
+        }
+
+        // Undo anything this widget changed, so the View can be used by
+        // any FlippableView
+        view.setOnClickListener(null);
+        view.clearAnimation();
+        resetFlipProperties(view);
+        view.setVisibility(VISIBLE);
+        mFaceViewPool.release(viewType, view);
+    }
+
+    /**
+     * Sets the pool that Views inflated from layout resources are taken
+     * from and returned to. The same pool can be shared between many
+     * FlippableViews, for example the rows of a list.
+     *
+     * @param faceViewPool The pool, or null to not reuse Views
+     *
+     * @see #setFrontAndBackLayouts(int, int)
+     */
+    public void setFaceViewPool(FaceViewPool faceViewPool) {
+        mFaceViewPool = faceViewPool;
+    }
+
+    /**
+     * @return the pool that Views are taken from and returned to, or null
+     * if one is not used
+     */
+    public FaceViewPool getFaceViewPool() {
+        return mFaceViewPool;
+    }
+
+
     /**
      * @return whether or not this view will display animations
      */
@@ -354,6 +1897,143 @@ public class FlippableView extends FrameLayout {
         return mAnimate;
     }
 
+    /**
+     * Sets how flips are animated.
+     *
+     * <p>
+     * {@link #FLIP_ANIMATION_SCALE} and {@link #FLIP_ANIMATION_ROTATION}
+     * animate View properties with a {@link ViewPropertyAnimator},
+     * promoting both faces to hardware layers only while the flip is
+     * running. Each frame then only updates the properties of the layers
+     * instead of redrawing the faces, so flips stay smooth when the faces
+     * are complex or the UI thread is busy drawing other Views.
+     * </p>
+     *
+     * @param flipAnimation One of {@link #FLIP_ANIMATION_LEGACY},
+     *                      {@link #FLIP_ANIMATION_SCALE} or
+     *                      {@link #FLIP_ANIMATION_ROTATION}
+     *
+     * @see #getFlipAnimation()
+     * @attr ref R.styleable#FlippableView_flipAnimation
+     */
+    public void setFlipAnimation(int flipAnimation) {
+        if (flipAnimation < FLIP_ANIMATION_LEGACY || flipAnimation > FLIP_ANIMATION_ROTATION) {
+            throw new IllegalArgumentException("Unknown flip animation: " + flipAnimation);
+        }
+        endPropertyFlip();
+        mFlipAnimation = flipAnimation;
+    }
+
+    /**
+     * @return how flips are animated
+     *
+     * @see #setFlipAnimation(int)
+     */
+    public int getFlipAnimation() {
+        return mFlipAnimation;
+    }
+
+    /**
+     * Sets the duration of each half of the flip animation: turning the
+     * old face away, and turning the new face in.
+     *
+     * @param durationMillis The duration in milliseconds, or a negative
+     *                       number to use the default duration
+     *
+     * @see #getFlipDuration()
+     */
+    public void setFlipDuration(long durationMillis) {
+        getFlipAnimations().setDuration(durationMillis);
+    }
+
+    /**
+     * @return the duration of each half of the flip animation, in
+     * milliseconds
+     *
+     * @see #setFlipDuration(long)
+     */
+    public long getFlipDuration() {
+        return getFlipAnimations().getDuration();
+    }
+
+    /**
+     * Sets the interpolator used for the flip animation.
+     *
+     * @param interpolator The interpolator, or null to use the default
+     *                     interpolators
+     *
+     * @see #getFlipInterpolator()
+     */
+    public void setFlipInterpolator(Interpolator interpolator) {
+        getFlipAnimations().setInterpolator(interpolator);
+    }
+
+    /**
+     * @return the interpolator used for the flip animation, or null if the
+     * default interpolators are used
+     *
+     * @see #setFlipInterpolator(Interpolator)
+     */
+    public Interpolator getFlipInterpolator() {
+        return getFlipAnimations().getInterpolator();
+    }
+
+    /**
+     * Sets how the height of the card is chosen from the heights of its
+     * faces.
+     *
+     * @param sizingPolicy One of {@link #SIZING_MAX_OF_FACES},
+     *                     {@link #SIZING_FRONT_ONLY} or {@link #SIZING_FIXED}
+     *
+     * @see #setFixedHeight(int)
+     * @attr ref R.styleable#FlippableView_sizingPolicy
+     */
+    public void setSizingPolicy(int sizingPolicy) {
+        if (sizingPolicy < SIZING_MAX_OF_FACES || sizingPolicy > SIZING_FIXED) {
+            throw new IllegalArgumentException("Unknown sizing policy: " + sizingPolicy);
+        }
+        if (sizingPolicy == mSizingPolicy) {
+            return;
+        }
+        mSizingPolicy = sizingPolicy;
+        requestLayout();
+    }
+
+    /**
+     * @return how the height of the card is chosen
+     *
+     * @see #setSizingPolicy(int)
+     */
+    public int getSizingPolicy() {
+        return mSizingPolicy;
+    }
+
+    /**
+     * Sets the height of the card used with {@link #SIZING_FIXED}.
+     *
+     * @param height The height in pixels
+     *
+     * @see #setSizingPolicy(int)
+     * @attr ref R.styleable#FlippableView_fixedHeight
+     */
+    public void setFixedHeight(int height) {
+        if (height == mFixedHeight) {
+            return;
+        }
+        mFixedHeight = height;
+        if (mSizingPolicy == SIZING_FIXED) {
+            requestLayout();
+        }
+    }
+
+    /**
+     * @return the height of the card (in pixels) used with
+     * {@link #SIZING_FIXED}
+     */
+    public int getFixedHeight() {
+        return mFixedHeight;
+    }
+
     /**
      * Sets the boolean determining whether or this view should
      * animate when clicked
@@ -364,11 +2044,7 @@ public class FlippableView extends FrameLayout {
      * @see #isAnimated()
      */
     public void setAnimate(boolean animate) {
-        if (animate == mAnimate) {
-            return;
-        }
-        mAnimate = animate;
-        updateFrontAndBack();  // updating OnClickListeners
+        mAnimate = animate;  // The click listener reads this when clicked
     }
 }
 
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * An adapter for a Spinner whose items are whole numbers, either from an
+ * {@code int[]} or from an arithmetic range (such as the years 1900 to
+ * 2016).
+ *
+ * <p>
+ * No object is held for each item: positions are mapped to values using
+ * the array or the range, and labels are only created (using a
+ * {@link Formatter}) when a row is shown. This makes very long ranges as
+ * cheap as short ones. {@link #getValue(int)} should be used instead of
+ * {@link #getItem(int)}, which has to box the value.
+ * </p>
+ *
+ * @see LabelledSpinner#setItemsRange(int, int, int, Formatter)
+ * @see LabelledSpinner#setItemsArray(int[], Formatter)
+ */
+public class IntSpinnerAdapter extends BaseAdapter {
+
+    private final LayoutInflater mInflater;
+
+    @LayoutRes private final int mItemRes;
+    @LayoutRes private int mDropDownItemRes;
+
+    /**
+     * The values, or null if the items are a range
+     */
+    private final int[] mValues;
+
+    /**
+     * The first value and the difference between values, if the items are
+     * a range
+     */
+    private final int mFirst, mStep;
+
+    private final int mCount;
+
+    private Formatter mFormatter;
+
+
+    /**
+     * @param context The current context
+     * @param values The values of the items. This array is used directly,
+     *               so it must not be modified afterwards.
+     */
+    public IntSpinnerAdapter(Context context, int[] values) {
+        this(context, values, 0, 0, values.length);
+    }
+
+    /**
+     * @param context The current context
+     * @param first The value of the first item
+     * @param last The value of the last item. If this cannot be reached
+     *             from {@code first} in steps of {@code step}, the last
+     *             item is the value before it.
+     * @param step The difference between the values of consecutive items.
+     *             This is negative for a descending range.
+     * @throws IllegalArgumentException if the step is 0 or goes away from
+     * {@code last}, or the range has too many items
+     */
+    public IntSpinnerAdapter(Context context, int first, int last, int step) {
+        this(context, null, first, step, getRangeCount(first, last, step));
+    }
+
+    private IntSpinnerAdapter(Context context, int[] values, int first, int step, int count) {
+        mInflater = LayoutInflater.from(context);
+        mItemRes = android.R.layout.simple_spinner_item;
+        mDropDownItemRes = android.R.layout.simple_spinner_dropdown_item;
+        mValues = values;
+        mFirst = first;
+        mStep = step;
+        mCount = count;
+    }
+
+    private static int getRangeCount(int first, int last, int step) {
+        if (step == 0 || Long.signum(last - (long) first) * step < 0) {
+            throw new IllegalArgumentException("The step must be non-zero and go from the " +
+                    "first value towards the last");
+        }
+        final long count = (last - (long) first) / step + 1;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("The range has too many items");
+        }
+        return (int) count;
+    }
+
+    /**
+     * Sets the layout resource used to create drop down views
+     *
+     * @param dropDownItemRes The layout resource. This must be a
+     *                        {@link TextView}.
+     */
+    public void setDropDownViewResource(@LayoutRes int dropDownItemRes) {
+        mDropDownItemRes = dropDownItemRes;
+    }
+
+    /**
+     * Sets the formatter used to create the label of each item
+     *
+     * @param formatter The formatter, or null to show the values as
+     *                  decimal numbers
+     */
+    public void setFormatter(Formatter formatter) {
+        mFormatter = formatter;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @return the formatter used to create labels, or null if the values
+     * are shown as decimal numbers
+     */
+    public Formatter getFormatter() {
+        return mFormatter;
+    }
+
+    /**
+     * @param position The position of the item
+     * @return the value of the item at this position
+     */
+    public int getValue(int position) {
+        return mValues == null ? mFirst + position * mStep : mValues[position];
+    }
+
+    /**
+     * @param value The value to find
+     * @return the position of the first item with this value, or -1 if
+     * there is none
+     */
+    public int getPosition(int value) {
+        if (mValues == null) {
+            final long offset = value - (long) mFirst;
+            if (offset % mStep != 0) {
+                return -1;
+            }
+            final long position = offset / mStep;
+            return position >= 0 && position < mCount ? (int) position : -1;
+        }
+        for (int i = 0; i < mCount; i++) {
+            if (mValues[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the value at the given position as an {@link Integer}. This
+     * may create an object for the value, so {@link #getValue(int)} should
+     * be used where possible.
+     */
+    @Override
+    public Integer getItem(int position) {
+        return getValue(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        return createViewFromResource(position, convertView, parent, mItemRes);
+    }
+
+    @Override
+    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+        return createViewFromResource(position, convertView, parent, mDropDownItemRes);
+    }
+
+    private View createViewFromResource(int position, View convertView, ViewGroup parent,
+                                        @LayoutRes int resource) {
+        final TextView textView = convertView == null
+                ? (TextView) mInflater.inflate(resource, parent, false)
+                : (TextView) convertView;
+
+        final int value = getValue(position);
+        textView.setText(mFormatter == null ? String.valueOf(value) : mFormatter.format(value));
+        return textView;
+    }
+
+
+    /**
+     * Creates the labels of items in an {@link IntSpinnerAdapter}.
+     */
+    public interface Formatter {
+
+        /**
+         * Called on the UI thread when a row is shown.
+         *
+         * @param value The value of the item
+         * @return the label to show for this value
+         */
+        CharSequence format(int value);
+    }
+}
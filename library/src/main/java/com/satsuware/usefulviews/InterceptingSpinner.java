@@ -0,0 +1,83 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.SoundEffectConstants;
+import android.view.accessibility.AccessibilityEvent;
+import android.widget.Spinner;
+
+/**
+ * The Spinner used by a {@link LabelledSpinner}, which lets the widget
+ * handle a click (for example, by showing a search dialog) instead of the
+ * Spinner opening its usual drop down.
+ *
+ * <p>
+ * Clicks are intercepted in {@link #performClick()}, so touches, key
+ * presses and accessibility clicks are all handled in the same way, and
+ * any touch or key listeners set on the Spinner by the app are left
+ * alone.
+ * </p>
+ */
+final class InterceptingSpinner extends Spinner {
+
+    private ClickInterceptor mClickInterceptor;
+
+
+    public InterceptingSpinner(Context context) {
+        super(context);
+    }
+
+    public InterceptingSpinner(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    /**
+     * @param interceptor Called before the drop down is opened, or null
+     */
+    void setClickInterceptor(ClickInterceptor interceptor) {
+        mClickInterceptor = interceptor;
+    }
+
+    @Override
+    public boolean performClick() {
+        if (mClickInterceptor != null && mClickInterceptor.onInterceptClick()) {
+            // What View#performClick() would do, as Spinner cannot have an
+            // OnClickListener to run
+            playSoundEffect(SoundEffectConstants.CLICK);
+            sendAccessibilityEvent(AccessibilityEvent.TYPE_VIEW_CLICKED);
+            return true;
+        }
+        return super.performClick();
+    }
+
+
+    /**
+     * Handles clicks on an {@link InterceptingSpinner}.
+     */
+    interface ClickInterceptor {
+
+        /**
+         * Called on the UI thread when the Spinner is clicked.
+         *
+         * @return true if the click has been handled, or false to open the
+         * usual drop down
+         */
+        boolean onInterceptClick();
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * An index over the labels of a list of items, used to find the items
+ * with a word starting with some text (e.g. "ki" matches "United
+ * Kingdom").
+ *
+ * <p>
+ * The start of each word in each label is an entry in the index, and the
+ * entries are sorted by the text following them. Finding the matches for
+ * a query is then a binary search for the first entry starting with the
+ * query, followed by reading consecutive entries until one no longer
+ * matches - so a query takes time proportional to the number of results,
+ * not the number of items.
+ * </p>
+ *
+ * <p>
+ * Building the index takes time proportional to the number of words, so
+ * it should be done on a background thread. Querying should be done on a
+ * single thread (usually the UI thread).
+ * </p>
+ */
+final class ItemSearchIndex {
+
+    /**
+     * The lower case label of each item
+     */
+    private final String[] mLabels;
+
+    /**
+     * The item and offset within its label of each entry, sorted by the
+     * label text from the offset onwards
+     */
+    private final int[] mEntryItems, mEntryOffsets;
+
+    /**
+     * Used to avoid returning the same item twice for one query (when
+     * multiple words of its label match). An item has already been
+     * returned if its stamp equals the current query's stamp.
+     */
+    private final int[] mItemStamps;
+    private int mCurrentStamp;
+
+    private final Locale mLocale;
+
+
+    private ItemSearchIndex(String[] labels, int[] entryItems, int[] entryOffsets,
+                            Locale locale) {
+        mLabels = labels;
+        mEntryItems = entryItems;
+        mEntryOffsets = entryOffsets;
+        mItemStamps = new int[labels.length];
+        mLocale = locale;
+    }
+
+    /**
+     * Builds an index over the {@link Object#toString()} labels of the
+     * items.
+     *
+     * @param items The items to index
+     * @param locale The locale used to convert labels to lower case
+     * @return the index
+     */
+    static ItemSearchIndex build(List<?> items, Locale locale) {
+        final int itemCount = items.size();
+        final String[] labels = new String[itemCount];
+
+        int entryCount = 0;
+        for (int i = 0; i < itemCount; i++) {
+            final Object item = items.get(i);
+            labels[i] = item == null ? "" : item.toString().toLowerCase(locale);
+            entryCount += countWords(labels[i]);
+        }
+
+        int[] entryItems = new int[entryCount];
+        int[] entryOffsets = new int[entryCount];
+        int entry = 0;
+        for (int i = 0; i < itemCount; i++) {
+            final String label = labels[i];
+            for (int offset = 0; offset < label.length(); offset++) {
+                if (isWordStart(label, offset)) {
+                    entryItems[entry] = i;
+                    entryOffsets[entry] = offset;
+                    entry++;
+                }
+            }
+        }
+
+        final int[] order = new int[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            order[i] = i;
+        }
+        sort(order, new int[entryCount], 0, entryCount, labels, entryItems, entryOffsets);
+
+        final int[] sortedItems = new int[entryCount];
+        final int[] sortedOffsets = new int[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            sortedItems[i] = entryItems[order[i]];
+            sortedOffsets[i] = entryOffsets[order[i]];
+        }
+        return new ItemSearchIndex(labels, sortedItems, sortedOffsets, locale);
+    }
+
+    private static int countWords(String label) {
+        int count = 0;
+        for (int offset = 0; offset < label.length(); offset++) {
+            if (isWordStart(label, offset)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static boolean isWordStart(String label, int offset) {
+        return Character.isLetterOrDigit(label.charAt(offset))
+                && (offset == 0 || !Character.isLetterOrDigit(label.charAt(offset - 1)));
+    }
+
+    /**
+     * Sorts the entry indices in {@code order} (between {@code from} and
+     * {@code to}) by the text of the entries, using a merge sort.
+     */
+    private static void sort(int[] order, int[] buffer, int from, int to, String[] labels,
+                             int[] entryItems, int[] entryOffsets) {
+        if (to - from < 2) {
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        sort(order, buffer, from, middle, labels, entryItems, entryOffsets);
+        sort(order, buffer, middle, to, labels, entryItems, entryOffsets);
+
+        int left = from;
+        int right = middle;
+        int out = from;
+        while (left < middle && right < to) {
+            final int a = order[left];
+            final int b = order[right];
+            if (compareEntries(labels[entryItems[a]], entryOffsets[a],
+                    labels[entryItems[b]], entryOffsets[b]) <= 0) {
+                buffer[out++] = a;
+                left++;
+            } else {
+                buffer[out++] = b;
+                right++;
+            }
+        }
+        while (left < middle) {
+            buffer[out++] = order[left++];
+        }
+        while (right < to) {
+            buffer[out++] = order[right++];
+        }
+        System.arraycopy(buffer, from, order, from, to - from);
+    }
+
+    private static int compareEntries(String a, int offsetA, String b, int offsetB) {
+        final int lengthA = a.length() - offsetA;
+        final int lengthB = b.length() - offsetB;
+        final int length = Math.min(lengthA, lengthB);
+        for (int i = 0; i < length; i++) {
+            final char charA = a.charAt(offsetA + i);
+            final char charB = b.charAt(offsetB + i);
+            if (charA != charB) {
+                return charA - charB;
+            }
+        }
+        return lengthA - lengthB;
+    }
+
+
+    /**
+     * @return the number of items in the index
+     */
+    int getItemCount() {
+        return mLabels.length;
+    }
+
+    /**
+     * Prepares a cursor for reading the results of a query with
+     * {@link #nextResults(Cursor, int[], int, int)}.
+     *
+     * @param cursor The cursor to reuse for the query
+     * @param query The text to search for
+     */
+    void startQuery(Cursor cursor, CharSequence query) {
+        cursor.mQuery = query.toString().toLowerCase(mLocale);
+        cursor.mStamp = ++mCurrentStamp;
+
+        // Binary search for the first entry which is not before the query
+        int low = 0;
+        int high = mEntryItems.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (compareToQuery(middle, cursor.mQuery) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        cursor.mEntry = low;
+        cursor.mFinished = false;
+    }
+
+    /**
+     * Reads the next results of a query. Items are only returned once
+     * per query, even if several words in their label match.
+     *
+     * @param cursor The cursor prepared by {@link #startQuery(Cursor, CharSequence)}
+     * @param out The array to write the matching item positions to
+     * @param outOffset The index in {@code out} to start writing at
+     * @param maxResults The maximum number of results to read
+     * @return the number of results written
+     */
+    int nextResults(Cursor cursor, int[] out, int outOffset, int maxResults) {
+        int count = 0;
+        while (count < maxResults && !cursor.mFinished) {
+            if (cursor.mStamp != mCurrentStamp || cursor.mEntry >= mEntryItems.length
+                    || compareToQuery(cursor.mEntry, cursor.mQuery) != 0) {
+                // No more matches (or a newer query was started)
+                cursor.mFinished = true;
+                break;
+            }
+
+            final int item = mEntryItems[cursor.mEntry++];
+            if (mItemStamps[item] != cursor.mStamp) {
+                mItemStamps[item] = cursor.mStamp;
+                out[outOffset + count++] = item;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return a negative number if the entry's text comes before the
+     * query, zero if it starts with the query, or a positive number if it
+     * comes after the query
+     */
+    private int compareToQuery(int entry, String query) {
+        final String label = mLabels[mEntryItems[entry]];
+        final int offset = mEntryOffsets[entry];
+        final int length = Math.min(label.length() - offset, query.length());
+        for (int i = 0; i < length; i++) {
+            final char labelChar = label.charAt(offset + i);
+            final char queryChar = query.charAt(i);
+            if (labelChar != queryChar) {
+                return labelChar - queryChar;
+            }
+        }
+        return label.length() - offset < query.length() ? -1 : 0;
+    }
+
+
+    /**
+     * The position reached when reading the results of a query. This can
+     * be reused between queries to avoid allocations.
+     */
+    static final class Cursor {
+
+        private String mQuery;
+        private int mStamp;
+        private int mEntry;
+        private boolean mFinished = true;
+
+        /**
+         * @return whether all results of the query have been read
+         */
+        boolean isFinished() {
+            return mFinished;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.widget.ArrayAdapter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An {@link ArrayAdapter} whose items can be updated in place from a
+ * {@link ListDiff}, instead of the adapter being replaced.
+ *
+ * @param <T> The type of the items
+ *
+ * @see LabelledSpinner#submitItems(List)
+ */
+class ItemsAdapter<T> extends PrefetchingArrayAdapter<T> {
+
+    /**
+     * If a diff has more operations than this, the items are copied over
+     * in one go, which is cheaper than many insertions and removals in
+     * the middle of a large list.
+     */
+    private static final int MAX_IN_PLACE_OPS = 64;
+
+    /**
+     * The items shown by this adapter. This is the same list that the
+     * {@link ArrayAdapter} reads from.
+     */
+    private final List<T> mItems;
+
+    /**
+     * An unmodified copy of the items, which is safe to read from a
+     * background thread while calculating the next diff.
+     */
+    private List<T> mSnapshot;
+
+
+    ItemsAdapter(Context context, @LayoutRes int itemRes, List<T> items) {
+        this(context, itemRes, new ArrayList<>(items), items);
+    }
+
+    private ItemsAdapter(Context context, @LayoutRes int itemRes, List<T> items,
+                         List<T> snapshot) {
+        super(context, itemRes, items);
+        mItems = items;
+        mSnapshot = snapshot;
+    }
+
+    /**
+     * @return the items currently shown. This list is never modified, so
+     * it can be compared against on a background thread.
+     */
+    List<T> getSnapshot() {
+        return mSnapshot;
+    }
+
+    /**
+     * Updates the items using a diff calculated from {@link #getSnapshot()}
+     * to {@code newItems}, and notifies observers once.
+     *
+     * @param diff The difference between the current and new items
+     * @param newItems The new items. This must not be modified afterwards.
+     */
+    void applyDiff(ListDiff diff, List<T> newItems) {
+        mSnapshot = newItems;
+        if (!diff.hasChanges()) {
+            return;
+        }
+
+        setNotifyOnChange(false);
+        if (diff.getOpCount() > MAX_IN_PLACE_OPS) {
+            mItems.clear();
+            mItems.addAll(newItems);
+        } else {
+            diff.applyTo(mItems, newItems);
+        }
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Takes a new snapshot after the items have been modified through one
+     * of the {@link ArrayAdapter} methods.
+     */
+    private void updateSnapshot() {
+        mSnapshot = new ArrayList<>(mItems);
+    }
+
+    @Override
+    public void add(T object) {
+        super.add(object);
+        updateSnapshot();
+    }
+
+    @Override
+    public void addAll(Collection<? extends T> collection) {
+        super.addAll(collection);
+        updateSnapshot();
+    }
+
+    @SafeVarargs
+    @Override
+    public final void addAll(T... items) {
+        // Copied element by element, as passing the array on to another
+        // varargs method would not be warning-free
+        final List<T> list = new ArrayList<>(items.length);
+        for (T item : items) {
+            list.add(item);
+        }
+        super.addAll(list);
+        updateSnapshot();
+    }
+
+    @Override
+    public void insert(T object, int index) {
+        super.insert(object, index);
+        updateSnapshot();
+    }
+
+    @Override
+    public void remove(T object) {
+        super.remove(object);
+        updateSnapshot();
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        updateSnapshot();
+    }
+
+    @Override
+    public void sort(Comparator<? super T> comparator) {
+        super.sort(comparator);
+        updateSnapshot();
+    }
+}
@@ -19,13 +19,21 @@ package com.satsuware.usefulviews;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Canvas;
 import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.support.annotation.ArrayRes;
 import android.support.annotation.ColorRes;
 import android.support.annotation.LayoutRes;
 import android.support.annotation.StringRes;
 import android.support.v4.content.ContextCompat;
+import android.support.v4.view.ViewCompat;
+import android.text.TextPaint;
+import android.text.TextUtils;
 import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -36,7 +44,11 @@ import android.widget.Spinner;
 import android.widget.SpinnerAdapter;
 import android.widget.TextView;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
 
 /**
  * A Spinner widget with a 'floating label' above it.
@@ -52,13 +64,40 @@ import java.util.List;
  * Material Design Guidelines for labels on text fields and spinners</a>.
  * </p>
  *
+ * <p>
+ * Alternatively, if flat rendering is enabled, only the Spinner is kept
+ * as a child View and the label, divider line and error label are drawn
+ * directly by this widget. This is cheaper to measure and lay out, which
+ * is noticeable on screens containing many LabelledSpinners.
+ * </p>
+ *
  * @attr ref R.styleable#LabelledSpinner_labelText
  * @attr ref R.styleable#LabelledSpinner_widgetColor
  * @attr ref R.styleable#LabelledSpinner_spinnerEntries
  * @attr ref R.styleable#LabelledSpinner_defaultErrorEnabled
+ * @attr ref R.styleable#LabelledSpinner_flatRendering
+ * @attr ref R.styleable#LabelledSpinner_searchEnabled
+ * @attr ref R.styleable#LabelledSpinner_prefetchDropDown
+ * @attr ref R.styleable#LabelledSpinner_precomputeText
  */
 public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemSelectedListener {
 
+    /**
+     * The default time, in milliseconds, that the selection must stay the
+     * same before asynchronous validators are run
+     *
+     * @see #setValidationDelay(long)
+     */
+    public static final long DEFAULT_VALIDATION_DELAY = 300;
+
+    /**
+     * The default number of parent items whose loaded items are kept in
+     * memory by a dependent spinner
+     *
+     * @see #setParentSpinner(LabelledSpinner, CascadingItemLoader, int)
+     */
+    public static final int DEFAULT_MAX_CACHED_PARENT_ITEMS = 16;
+
     /**
      * The label positioned above the Spinner, similar to the floating
      * label from a {@code android.support.design.widget.TextInputLayout}.
@@ -108,6 +147,185 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      */
     private boolean mDefaultErrorEnabled;
 
+    /**
+     * Whether the label, divider and error label are drawn directly by
+     * this widget (using {@link #mFlatDecoration}) instead of existing as
+     * child Views.
+     */
+    private boolean mFlatRendering;
+
+    /**
+     * Draws the label, divider and error label when flat rendering is
+     * enabled. This is null until flat rendering is first enabled.
+     */
+    private FlatSpinnerDecoration mFlatDecoration;
+
+    /**
+     * The text shown on the label. This is kept here (rather than only on
+     * {@link #mLabel}) so that it is available in both rendering modes.
+     */
+    private CharSequence mLabelText;
+
+    /**
+     * The text currently shown on the error label
+     */
+    private CharSequence mErrorText = "";
+
+    /**
+     * The color currently used for the divider line. This is either the
+     * {@link #mWidgetColor} or the error color.
+     */
+    private int mDividerColor;
+
+    /**
+     * The color of the divider line while an error is shown, resolved once
+     * so that selections do not need to look it up
+     */
+    private int mErrorColor;
+
+    /**
+     * Whether an error is currently shown on the error label
+     */
+    private boolean mErrorShowing;
+
+    /**
+     * Validators run on the UI thread whenever an item is selected
+     */
+    private final ArrayList<Validator> mValidators = new ArrayList<>();
+
+    /**
+     * Validators run on a background thread once the selection has stopped
+     * changing, if the item passed all of {@link #mValidators}
+     */
+    private final ArrayList<AsyncValidator> mAsyncValidators = new ArrayList<>();
+
+    private long mValidationDelay = DEFAULT_VALIDATION_DELAY;
+
+    /**
+     * Incremented whenever a validation is started or cancelled, so that
+     * only the result for the latest selection is shown.
+     */
+    private int mValidationGeneration;
+
+    /**
+     * Starts the asynchronous validators after the validation delay, or
+     * null if none are waiting to start
+     */
+    private Runnable mPendingValidation;
+
+    /**
+     * The asynchronous validators currently running, or null
+     */
+    private Future<?> mValidationFuture;
+
+    /**
+     * Whether an asynchronous validation was cancelled when this widget
+     * was detached, so that it should be run again when reattached
+     */
+    private boolean mValidateOnAttach;
+
+    /**
+     * The group this spinner has been added to, or null
+     */
+    private LabelledSpinnerGroup mGroup;
+
+    /**
+     * Loads the items of this spinner from the selection of its parent
+     * spinner, or null if it does not have a parent
+     */
+    private SpinnerCascade mCascade;
+
+    /**
+     * The cascades of the spinners whose items depend on the selection of
+     * this spinner
+     */
+    private final ArrayList<SpinnerCascade> mDependentCascades = new ArrayList<>();
+
+    /**
+     * Whether the items being loaded from the parent spinner were
+     * cancelled when this widget was detached, so that they should be
+     * loaded again when reattached
+     */
+    private boolean mReloadCascadeOnAttach;
+
+    /**
+     * Whether the drop down views are created ahead of time while the UI
+     * thread is idle
+     */
+    private boolean mDropDownPrefetchEnabled;
+
+    /**
+     * Creates the drop down views when prefetching is enabled. This is
+     * null until prefetching is first enabled.
+     */
+    private DropDownPrefetcher mDropDownPrefetcher;
+
+    /**
+     * Whether the text of the drop down rows is laid out on a background
+     * thread when the items are set
+     */
+    private boolean mTextPrecomputeEnabled;
+
+    /**
+     * Incremented whenever the items change, so that text layouts made
+     * for old items are discarded.
+     */
+    private int mTextPrecomputeGeneration;
+
+    /**
+     * Pixel dimensions used to position the label, divider and error
+     * label. These are copied from the {@link Dimensions} for the screen
+     * density when the widget is created.
+     */
+    private int mIndentPx, mLabelPaddingTop, mDividerHeight, mDividerRightMargin,
+            mDividerBottomMargin;
+
+    /**
+     * The adapter created by {@link #submitItems(List)}, which is updated
+     * in place by subsequent calls
+     */
+    private ItemsAdapter<?> mItemsAdapter;
+
+    /**
+     * Incremented on each call to {@link #submitItems(List)}, so that only
+     * the diff for the latest items is applied.
+     */
+    private int mSubmitGeneration;
+
+    /**
+     * Whether a searchable dialog is shown instead of the Spinner's drop
+     * down
+     */
+    private boolean mSearchEnabled;
+
+    /**
+     * The items shown in the Spinner, used to build the search index and
+     * the precomputed text layouts. This is null if the items were
+     * provided by a custom adapter or a {@link PagedItemSource}, in which
+     * case search is not available.
+     */
+    private List<?> mSearchItems;
+
+    /**
+     * The index used to search {@link #mSearchItems}, or null if it has
+     * not been built yet.
+     */
+    private ItemSearchIndex mSearchIndex;
+
+    /**
+     * Incremented whenever the items change, so that an index built for
+     * old items is discarded.
+     */
+    private int mSearchIndexGeneration;
+
+    private SpinnerSearchDialog mSearchDialog;
+
+    /**
+     * The selection restored from a saved state before the Spinner had
+     * enough items for it, or {@link AdapterView#INVALID_POSITION}
+     */
+    private int mPendingRestoredSelection = AdapterView.INVALID_POSITION;
+
 
     public LabelledSpinner(Context context) {
         this(context, null);
@@ -135,38 +353,38 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      * @param attrs AttributeSet passed from constructor
      */
     private void initializeLayout(Context context, AttributeSet attrs) {
-        prepareLayout(context);
-
-        mLabel = (TextView) getChildAt(0);
-        mSpinner = (Spinner) getChildAt(1);
-        mDivider = getChildAt(2);
-        mErrorLabel = (TextView) getChildAt(3);
-
         final TypedArray a = context.obtainStyledAttributes(
                 attrs, R.styleable.LabelledSpinner, 0, 0);
 
-        String labelText = a.getString(R.styleable.LabelledSpinner_labelText);
+        mLabelText = a.getString(R.styleable.LabelledSpinner_labelText);
         mWidgetColor = a.getColor(R.styleable.LabelledSpinner_widgetColor,
                 ContextCompat.getColor(context, R.color.widget_labelled_spinner_default));
+        mDividerColor = mWidgetColor;
+        mErrorColor = ContextCompat.getColor(context, R.color.widget_labelled_spinner_error);
+        mFlatRendering = a.getBoolean(R.styleable.LabelledSpinner_flatRendering, false);
 
-        mLabel.setText(labelText);
-        mLabel.setPadding(0, dpToPixels(16), 0, 0);
-        mSpinner.setPadding(0, dpToPixels(8), 0, dpToPixels(8));
-        mSpinner.setOnItemSelectedListener(this);
+        final Dimensions dimensions = Dimensions.get(context);
+        mIndentPx = dimensions.mIndent;
+        mLabelPaddingTop = dimensions.mLabelPaddingTop;
+        mDividerHeight = dimensions.mDividerHeight;
+        mDividerRightMargin = dimensions.mDividerRightMargin;
+        mDividerBottomMargin = dimensions.mDividerBottomMargin;
 
-        MarginLayoutParams dividerParams = (MarginLayoutParams) mDivider.getLayoutParams();
-        dividerParams.rightMargin = dpToPixels(4);
-        dividerParams.bottomMargin = dpToPixels(8);
-        mDivider.setLayoutParams(dividerParams);
+        prepareLayout(context, attrs == null);
 
-        mLabel.setTextColor(mWidgetColor);
-        mDivider.setBackgroundColor(mWidgetColor);
+        mSpinner.setPadding(0, dimensions.mSpinnerPaddingVertical,
+                0, dimensions.mSpinnerPaddingVertical);
+        mSpinner.setOnItemSelectedListener(this);
 
-        alignLabelWithSpinnerItem(4);
+        setSearchEnabled(a.getBoolean(R.styleable.LabelledSpinner_searchEnabled, false));
+        setDropDownPrefetchEnabled(
+                a.getBoolean(R.styleable.LabelledSpinner_prefetchDropDown, false));
+        setTextPrecomputeEnabled(
+                a.getBoolean(R.styleable.LabelledSpinner_precomputeText, false));
 
-        final CharSequence[] entries = a.getTextArray(R.styleable.LabelledSpinner_spinnerEntries);
-        if (entries != null) {
-            setItemsArray(entries);
+        final int entriesResId = a.getResourceId(R.styleable.LabelledSpinner_spinnerEntries, 0);
+        if (entriesResId != 0) {
+            setItemsArray(entriesResId);
         }
 
         mDefaultErrorEnabled =
@@ -177,22 +395,207 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
     }
 
     /**
-     * Inflates the layout and sets layout parameters
+     * Creates the child Views for the current rendering mode and sets
+     * layout parameters
+     *
+     * @param setDefaultLayoutParams Whether this widget should be given
+     *                               default layout parameters. This is
+     *                               only done when it is created in code,
+     *                               as otherwise they are supplied by the
+     *                               parent from the XML attributes.
+     */
+    private void prepareLayout(Context context, boolean setDefaultLayoutParams) {
+        setOrientation(LinearLayout.VERTICAL);
+        if (setDefaultLayoutParams) {
+            setLayoutParams(new LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+
+        if (mFlatRendering) {
+            mSpinner = new InterceptingSpinner(context);
+            addView(mSpinner, new LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT,
+                    ViewGroup.LayoutParams.WRAP_CONTENT));
+            prepareFlatDecoration();
+        } else {
+            inflateChildViews(context);
+            mSpinner = (Spinner) getChildAt(1);
+        }
+        ((InterceptingSpinner) mSpinner).setClickInterceptor(
+                new InterceptingSpinner.ClickInterceptor() {
+                    @Override
+                    public boolean onInterceptClick() {
+                        if (!mSearchEnabled || mSearchItems == null) {
+                            return false;  // Use the usual drop down
+                        }
+                        showSearchDialog();
+                        return true;
+                    }
+                });
+    }
+
+    /**
+     * Inflates the label, Spinner, divider and error label, and applies
+     * the current state of this widget to them.
      */
-    private void prepareLayout(Context context) {
+    private void inflateChildViews(Context context) {
         LayoutInflater inflater =
                 (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         inflater.inflate(R.layout.widget_labelled_spinner, this, true);
 
-        setOrientation(LinearLayout.VERTICAL);
-        setLayoutParams(new LayoutParams(
-                ViewGroup.LayoutParams.MATCH_PARENT,
-                ViewGroup.LayoutParams.WRAP_CONTENT));
+        mLabel = (TextView) getChildAt(0);
+        mDivider = getChildAt(2);
+        mErrorLabel = (TextView) getChildAt(3);
+
+        mLabel.setText(mLabelText);
+        mLabel.setPadding(0, mLabelPaddingTop, 0, 0);
+        mErrorLabel.setText(mErrorText);
+
+        // The new Views have not been laid out yet, so their layout
+        // parameters can be changed without requesting another layout
+        MarginLayoutParams dividerParams = (MarginLayoutParams) mDivider.getLayoutParams();
+        dividerParams.rightMargin = mDividerRightMargin;
+        dividerParams.bottomMargin = mDividerBottomMargin;
+
+        mLabel.setTextColor(mWidgetColor);
+        mDivider.setBackgroundColor(mDividerColor);
+
+        applyIndent();
+    }
+
+    /**
+     * Creates the {@link FlatSpinnerDecoration} (if needed) and updates it
+     * with the current state of this widget.
+     */
+    private void prepareFlatDecoration() {
+        if (mFlatDecoration == null) {
+            mFlatDecoration = new FlatSpinnerDecoration(getContext(), mWidgetColor, mErrorColor);
+        }
+        mFlatDecoration.setLabelText(mLabelText);
+        mFlatDecoration.setErrorText(mErrorText);
+        mFlatDecoration.setLabelColor(mWidgetColor);
+        mFlatDecoration.setDividerColor(mDividerColor);
+        setWillNotDraw(false);
+    }
+
+    /**
+     * Sets whether the label, divider line and error label should be drawn
+     * directly by this widget, instead of being separate child Views.
+     *
+     * <p>
+     * With flat rendering enabled, {@link #getSpinner()} is the only child
+     * View, which makes the widget cheaper to measure, lay out and draw.
+     * While it is enabled, {@link #getLabel()}, {@link #getDivider()} and
+     * {@link #getErrorLabel()} return null, as those Views do not exist.
+     * Flat rendering must be disabled explicitly to use them again.
+     * </p>
+     *
+     * @param enabled Whether or not flat rendering should be used
+     *
+     * @see #isFlatRenderingEnabled()
+     * @attr ref R.styleable#LabelledSpinner_flatRendering
+     */
+    public void setFlatRenderingEnabled(boolean enabled) {
+        if (enabled == mFlatRendering) {
+            return;
+        }
+        mFlatRendering = enabled;
+
+        if (enabled) {
+            removeView(mLabel);
+            removeView(mDivider);
+            removeView(mErrorLabel);
+            mLabel = null;
+            mDivider = null;
+            mErrorLabel = null;
+            prepareFlatDecoration();
+        } else {
+            // Inflate the full layout again, but keep the existing Spinner
+            // so that its adapter, selection and listeners are preserved
+            removeView(mSpinner);
+            inflateChildViews(getContext());
+            removeViewAt(1);
+            addView(mSpinner, 1);
+            setWillNotDraw(true);
+        }
+    }
+
+    /**
+     * @return whether or not the label, divider line and error label are
+     * drawn directly by this widget
+     *
+     * @see #setFlatRenderingEnabled(boolean)
+     */
+    public boolean isFlatRenderingEnabled() {
+        return mFlatRendering;
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!mFlatRendering) {
+            super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+            return;
+        }
+
+        final int paddingHorizontal = getPaddingLeft() + getPaddingRight();
+        final int paddingVertical = getPaddingTop() + getPaddingBottom();
+
+        mSpinner.measure(
+                getChildMeasureSpec(widthMeasureSpec, paddingHorizontal,
+                        mSpinner.getLayoutParams().width),
+                MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+
+        final int contentWidth = mSpinner.getMeasuredWidth();
+        final int textWidth = contentWidth - mIndentPx;
+        final int height = paddingVertical
+                + mLabelPaddingTop + mFlatDecoration.getLabelHeight(textWidth)
+                + mSpinner.getMeasuredHeight()
+                + mDividerHeight + mDividerBottomMargin
+                + mFlatDecoration.getErrorHeight(textWidth);
+
+        setMeasuredDimension(
+                resolveSize(contentWidth + paddingHorizontal, widthMeasureSpec),
+                resolveSize(height, heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (!mFlatRendering) {
+            super.onLayout(changed, l, t, r, b);
+            return;
+        }
+
+        final int left = getPaddingLeft();
+        final int top = getPaddingTop() + mLabelPaddingTop
+                + mFlatDecoration.getLabelHeight(mSpinner.getMeasuredWidth() - mIndentPx);
+        mSpinner.layout(left, top,
+                left + mSpinner.getMeasuredWidth(), top + mSpinner.getMeasuredHeight());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (!mFlatRendering) {
+            return;
+        }
+
+        final int dividerTop = mSpinner.getBottom();
+        mFlatDecoration.draw(canvas,
+                mSpinner.getLeft() + mIndentPx,
+                getPaddingTop() + mLabelPaddingTop,
+                dividerTop,
+                mSpinner.getRight() - mDividerRightMargin,
+                mDividerHeight,
+                dividerTop + mDividerHeight + mDividerBottomMargin);
     }
 
     /**
      * @return the label (a {@link android.widget.TextView}) from this
-     * compound view
+     * compound view, or null if flat rendering is enabled (in which case
+     * the label is drawn directly and there is no TextView).
+     *
+     * @see #setFlatRenderingEnabled(boolean)
      */
     public TextView getLabel() {
         return mLabel;
@@ -208,7 +611,10 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
 
     /**
      * @return the divider line {@link android.view.View} underneath the
-     * Spinner
+     * Spinner, or null if flat rendering is enabled (in which case the
+     * divider is drawn directly and there is no View).
+     *
+     * @see #setFlatRenderingEnabled(boolean)
      */
     public View getDivider() {
         return mDivider;
@@ -216,7 +622,11 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
 
     /**
      * @return the error label (a {@link android.widget.TextView}) from this
-     * compound view, which displays error texts
+     * compound view, which displays error texts, or null if flat rendering
+     * is enabled (in which case the error is drawn directly and there is
+     * no TextView).
+     *
+     * @see #setFlatRenderingEnabled(boolean)
      */
     public TextView getErrorLabel() {
         return mErrorLabel;
@@ -232,7 +642,15 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      * @attr ref R.styleable#LabelledSpinner_labelText
      */
     public void setLabelText(CharSequence labelText) {
-        mLabel.setText(labelText);
+        mLabelText = labelText;
+        if (mFlatRendering) {
+            if (mFlatDecoration.setLabelText(labelText)) {
+                requestLayout();
+                invalidate();
+            }
+        } else {
+            mLabel.setText(labelText);
+        }
     }
 
     /**
@@ -247,14 +665,14 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      * @attr ref R.styleable#LabelledSpinner_labelText
      */
     public void setLabelText(@StringRes int labelTextId) {
-        mLabel.setText(getResources().getString(labelTextId));
+        setLabelText(getResources().getString(labelTextId));
     }
 
     /**
      * @return the text shown on the floating label
      */
     public CharSequence getLabelText() {
-        return mLabel.getText();
+        return mFlatRendering ? mLabelText : mLabel.getText();
     }
 
     /**
@@ -269,8 +687,13 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      */
     public void setColor(@ColorRes int colorRes) {
         mWidgetColor = ContextCompat.getColor(getContext(), colorRes);
-        mLabel.setTextColor(mWidgetColor);
-        mDivider.setBackgroundColor(mWidgetColor);
+        if (mFlatRendering) {
+            mFlatDecoration.setLabelColor(mWidgetColor);
+            invalidate();
+        } else {
+            mLabel.setTextColor(mWidgetColor);
+        }
+        setDividerColor(mErrorShowing ? mErrorColor : mWidgetColor);
     }
 
     /**
@@ -292,7 +715,11 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      * @see #setDefaultErrorEnabled(boolean)
      */
     public void setDefaultErrorText(CharSequence error) {
+        final CharSequence oldError = mDefaultErrorText;
         mDefaultErrorText = error;
+        if (mErrorShowing && mErrorText == oldError) {
+            showError(error);
+        }
     }
 
     /**
@@ -338,6 +765,12 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
     /**
      * Sets the array of items to be used in the Spinner.
      *
+     * <p>
+     * The entries of the array are read once for each configuration and
+     * shared by all spinners using it, so the items cannot be modified
+     * through the adapter.
+     * </p>
+     *
      * @param arrayResId The identifier of the array to use as the data
      *                   source (e.g. {@code R.array.myArray})
      * @param spinnerItemRes The identifier of the layout used to create
@@ -355,12 +788,9 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      */
     public void setItemsArray(@ArrayRes int arrayResId, @LayoutRes int spinnerItemRes,
                               @LayoutRes int dropdownViewRes) {
-        ArrayAdapter<CharSequence> adapter = ArrayAdapter.createFromResource(
-                getContext(),
-                arrayResId,
-                spinnerItemRes);
-        adapter.setDropDownViewResource(dropdownViewRes);
-        mSpinner.setAdapter(adapter);
+        // The entries are shared with other spinners using the same array
+        setItemsArray(EntriesCache.getEntries(getResources(), arrayResId), spinnerItemRes,
+                dropdownViewRes);
     }
 
     /**
@@ -400,12 +830,14 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      */
     public void setItemsArray(CharSequence[] itemsArray, @LayoutRes int spinnerItemRes,
                               @LayoutRes int dropdownViewRes) {
-        ArrayAdapter<CharSequence> adapter = new ArrayAdapter<>(
+        final List<CharSequence> items = Arrays.asList(itemsArray);
+        ArrayAdapter<CharSequence> adapter = new PrefetchingArrayAdapter<>(
                 getContext(),
                 spinnerItemRes,
-                itemsArray);
+                items);
         adapter.setDropDownViewResource(dropdownViewRes);
         mSpinner.setAdapter(adapter);
+        onItemsChanged(items);
     }
 
     /**
@@ -445,83 +877,737 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      */
     public void setItemsArray(List<?> list, @LayoutRes int spinnerItemRes,
                               @LayoutRes int dropdownViewRes) {
-        ArrayAdapter<?> adapter = new ArrayAdapter<>(
+        ArrayAdapter<?> adapter = new PrefetchingArrayAdapter<>(
                 getContext(),
                 spinnerItemRes,
                 list);
         adapter.setDropDownViewResource(dropdownViewRes);
         mSpinner.setAdapter(adapter);
+        onItemsChanged(list);
     }
 
     /**
-     * Sets the Adapter used to provide the data for the Spinner.
-     * This would be similar to setting an Adapter for a normal Spinner
-     * component.
+     * Updates the items shown in the Spinner.
      *
-     * @param adapter The Adapter which would provide data for the Spinner
+     * <p>
+     * Unlike {@link #setItemsArray(List)}, this does not replace the
+     * adapter when called again. Instead, the difference between the
+     * current and new items is calculated on a background thread, and only
+     * the items that were inserted, removed or moved are updated. The
+     * selected item stays selected (by {@link Object#equals(Object)}), even
+     * if its position changes. If the items have not changed, nothing is
+     * updated.
+     * </p>
+     *
+     * <p>
+     * The first call (or a call after the adapter has been changed with
+     * another method) sets a new adapter.
+     * </p>
+     *
+     * @param items The new items. This list is copied, so it can be
+     *              modified afterwards.
+     *
+     * @see #setItemsArray(List)
      */
-    public void setCustomAdapter(SpinnerAdapter adapter) {
-        mSpinner.setAdapter(adapter);
+    public <T> void submitItems(List<T> items) {
+        final List<T> newItems = new ArrayList<>(items);
+        final int generation = ++mSubmitGeneration;
+
+        if (mItemsAdapter == null || mSpinner.getAdapter() != mItemsAdapter) {
+            ItemsAdapter<T> adapter = new ItemsAdapter<>(
+                    getContext(), android.R.layout.simple_spinner_item, newItems);
+            adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+            mItemsAdapter = adapter;
+            mSpinner.setAdapter(adapter);
+            onItemsChanged(newItems);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        final ItemsAdapter<T> adapter = (ItemsAdapter<T>) mItemsAdapter;
+        final List<T> oldItems = adapter.getSnapshot();
+
+        WidgetExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final ListDiff diff = ListDiff.calculate(oldItems, newItems);
+                WidgetExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSubmitGeneration
+                                || mSpinner.getAdapter() != adapter
+                                || adapter.getSnapshot() != oldItems) {
+                            return;  // Newer items have been set since
+                        }
+                        applyItemsDiff(adapter, diff, newItems);
+                    }
+                });
+            }
+        });
+    }
+
+    private <T> void applyItemsDiff(ItemsAdapter<T> adapter, ListDiff diff, List<T> newItems) {
+        final int oldSelection = mSpinner.getSelectedItemPosition();
+        adapter.applyDiff(diff, newItems);
+        if (!diff.hasChanges()) {
+            return;
+        }
+        onItemsChanged(newItems);
+        if (oldSelection == AdapterView.INVALID_POSITION) {
+            return;
+        }
+
+        // Keep the same item selected, or the nearest item if it was removed
+        int newSelection = diff.getNewPosition(oldSelection);
+        if (newSelection == -1) {
+            newSelection = Math.min(oldSelection, newItems.size() - 1);
+        }
+        if (newSelection >= 0 && newSelection != oldSelection) {
+            mSpinner.setSelection(newSelection, false);
+        }
     }
 
     /**
-     * Sets the currently selected item.
+     * Sets the items using a {@link LightweightSpinnerAdapter}, which
+     * creates its rows without inflating XML and finds the label of each
+     * item once, using a label extractor instead of
+     * {@link Object#toString()}.
      *
-     * @param position Index (starting at 0) of the data item to be selected.
+     * <p>
+     * Search and precomputed text are not available for these items, as
+     * they depend on the labels of all items being known in advance.
+     * </p>
+     *
+     * @param list The list to be used as the data source. This list is
+     *             used directly, so it should not be modified afterwards.
+     * @param labelExtractor Finds the label of each item, or null to use
+     *                       {@link Object#toString()}
+     *
+     * @see LightweightSpinnerAdapter
      */
-    public void setSelection(int position) {
-        mSpinner.setSelection(position);
+    public <T> void setItemsArray(
+            List<T> list, LightweightSpinnerAdapter.LabelExtractor<? super T> labelExtractor) {
+        mSpinner.setAdapter(new LightweightSpinnerAdapter<>(getContext(), list, labelExtractor));
+        onItemsChanged(null);
     }
 
     /**
-     * Sets the currently selected item.
+     * Sets the items to the whole numbers from {@code first} to
+     * {@code last}, in steps of 1 (or -1 if {@code last} is smaller).
      *
-     * @param position Index (starting at 0) of the data item to be selected.
-     * @param animate Whether or not the transition should be animated
+     * @param first The value of the first item
+     * @param last The value of the last item
+     *
+     * @see #setItemsRange(int, int, int, IntSpinnerAdapter.Formatter)
      */
-    public void setSelection(int position, boolean animate) {
-        mSpinner.setSelection(position, animate);
+    public void setItemsRange(int first, int last) {
+        setItemsRange(first, last, last < first ? -1 : 1, null);
     }
 
-
     /**
-     * Interface definition for a callback to be invoked when an item in this
-     * LabelledSpinner's Spinner view has been selected.
+     * Sets the items to a range of whole numbers. No object is created for
+     * each item, and labels are only created for the rows shown, so this
+     * is suitable for long ranges.
+     *
+     * @param first The value of the first item
+     * @param last The value of the last item
+     * @param step The difference between the values of consecutive items
+     * @param formatter Creates the label of each item, or null to show the
+     *                  values as decimal numbers
+     *
+     * @see IntSpinnerAdapter
      */
-    public interface OnItemChosenListener {
-
-        /**
-         * Callback method to be invoked when an item in this LabelledSpinner's
-         * spinner view has been selected. This callback is invoked only when
-         * the newly selected position is different from the previously selected
-         * position or if there was no selected item.
-         *
-         * @param labelledSpinner The LabelledSpinner where the selection
-         *                        happened. This view contains the AdapterView.
-         * @param adapterView The AdapterView where the selection happened. Note
-         *                    that this AdapterView is part of the LabelledSpinner
-         *                    component.
-         * @param itemView The view within the AdapterView that was clicked.
-         * @param position The position of the view in the adapter.
-         * @param id The row id of the item that is selected.
-         */
-        void onItemChosen(View labelledSpinner, AdapterView<?> adapterView, View itemView,
-                          int position, long id);
-
-        /**
-         * Callback method to be invoked when the selection disappears from this
-         * view. The selection can disappear for instance when touch is activated
-         * or when the adapter becomes empty.
-         *
-         * @param labelledSpinner The LabelledSpinner view that contains the
-         *                        AdapterView.
-         * @param adapterView The AdapterView that now contains no selected item.
-         */
-        void onNothingChosen(View labelledSpinner, AdapterView<?> adapterView);
+    public void setItemsRange(int first, int last, int step,
+                              IntSpinnerAdapter.Formatter formatter) {
+        setIntAdapter(new IntSpinnerAdapter(getContext(), first, last, step), formatter);
     }
 
     /**
-     * Register a callback to be invoked when an item in this AdapterView has
+     * Sets the items to whole numbers from an array. No object is created
+     * for each item, and labels are only created for the rows shown.
+     *
+     * @param values The values of the items. This array is used directly,
+     *               so it must not be modified afterwards.
+     *
+     * @see #setItemsArray(int[], IntSpinnerAdapter.Formatter)
+     */
+    public void setItemsArray(int[] values) {
+        setItemsArray(values, null);
+    }
+
+    /**
+     * Sets the items to whole numbers from an array.
+     *
+     * @param values The values of the items. This array is used directly,
+     *               so it must not be modified afterwards.
+     * @param formatter Creates the label of each item, or null to show the
+     *                  values as decimal numbers
+     *
+     * @see IntSpinnerAdapter
+     */
+    public void setItemsArray(int[] values, IntSpinnerAdapter.Formatter formatter) {
+        setIntAdapter(new IntSpinnerAdapter(getContext(), values), formatter);
+    }
+
+    private void setIntAdapter(IntSpinnerAdapter adapter, IntSpinnerAdapter.Formatter formatter) {
+        adapter.setFormatter(formatter);
+        mSpinner.setAdapter(adapter);
+        onItemsChanged(null);
+    }
+
+    /**
+     * Sets a source of items which are loaded in pages as they are needed,
+     * instead of all being held in memory. This is useful for very large
+     * data sets, such as rows from a database.
+     *
+     * <p>
+     * Until an item has been loaded, its row shows a placeholder and
+     * {@link AdapterView#getItemAtPosition(int)} returns null for it.
+     * </p>
+     *
+     * @param source The source to load items from
+     *
+     * @see #setItemSource(PagedItemSource, int, int)
+     * @see PagedSpinnerAdapter
+     */
+    public void setItemSource(PagedItemSource<?> source) {
+        setItemSource(source, PagedSpinnerAdapter.DEFAULT_PAGE_SIZE,
+                PagedSpinnerAdapter.DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    /**
+     * Sets a source of items which are loaded in pages as they are needed,
+     * instead of all being held in memory.
+     *
+     * @param source The source to load items from
+     * @param pageSize The number of items loaded at a time
+     * @param maxCachedPages The maximum number of pages kept in memory.
+     *                       When this is exceeded, the least recently used
+     *                       page is discarded.
+     *
+     * @see #setItemSource(PagedItemSource)
+     * @see PagedSpinnerAdapter
+     */
+    public void setItemSource(PagedItemSource<?> source, int pageSize, int maxCachedPages) {
+        mSpinner.setAdapter(new PagedSpinnerAdapter<>(
+                getContext(), source, pageSize, maxCachedPages));
+        onItemsChanged(null);
+    }
+
+    /**
+     * Sets the Adapter used to provide the data for the Spinner.
+     * This would be similar to setting an Adapter for a normal Spinner
+     * component.
+     *
+     * @param adapter The Adapter which would provide data for the Spinner
+     */
+    public void setCustomAdapter(SpinnerAdapter adapter) {
+        mSpinner.setAdapter(adapter);
+        onItemsChanged(null);
+    }
+
+    /**
+     * Makes the items of this spinner depend on the item selected in
+     * another spinner (for example, a list of regions which depends on the
+     * selected country).
+     *
+     * @param parent The spinner whose selection the items depend on, or
+     *               null to remove the current parent
+     * @param loader Loads the items for each item selected in the parent
+     *
+     * @see #setParentSpinner(LabelledSpinner, CascadingItemLoader, int)
+     */
+    public void setParentSpinner(LabelledSpinner parent, CascadingItemLoader<?> loader) {
+        setParentSpinner(parent, loader, DEFAULT_MAX_CACHED_PARENT_ITEMS);
+    }
+
+    /**
+     * Makes the items of this spinner depend on the item selected in
+     * another spinner.
+     *
+     * <p>
+     * Whenever the parent's selection changes, the items are loaded on a
+     * background thread, and this spinner is empty until they are ready.
+     * A load that is still running when the parent's selection changes
+     * again is cancelled. The items loaded for the most recently selected
+     * parent items are kept in memory, so that selecting one of them again
+     * shows its items immediately. Spinners can be chained, so that a
+     * spinner depends on a spinner which itself depends on another.
+     * </p>
+     *
+     * @param parent The spinner whose selection the items depend on, or
+     *               null to remove the current parent
+     * @param loader Loads the items for each item selected in the parent
+     * @param maxCachedParentItems The maximum number of parent items whose
+     *                             loaded items are kept in memory, or 0 to
+     *                             not keep any. When this is exceeded, the
+     *                             items for the least recently selected
+     *                             parent item are discarded.
+     * @throws IllegalArgumentException if the parent is this spinner, or
+     * the maximum number of cached parent items is negative
+     *
+     * @see #getParentSpinner()
+     * @see CascadingItemLoader
+     */
+    public void setParentSpinner(LabelledSpinner parent, CascadingItemLoader<?> loader,
+                                 int maxCachedParentItems) {
+        if (parent == this) {
+            throw new IllegalArgumentException("A LabelledSpinner cannot be its own parent");
+        }
+        if (maxCachedParentItems < 0) {
+            throw new IllegalArgumentException("The maximum number of cached parent items " +
+                    "cannot be negative");
+        }
+        mReloadCascadeOnAttach = false;
+        if (mCascade != null) {
+            mCascade.cancel();
+            mCascade.getParent().mDependentCascades.remove(mCascade);
+            mCascade = null;
+        }
+        if (parent == null) {
+            return;
+        }
+
+        mCascade = new SpinnerCascade(parent, this, loader, maxCachedParentItems);
+        parent.mDependentCascades.add(mCascade);
+        mCascade.onParentItemChanged(parent.getItemAt(
+                parent.mSpinner.getSelectedItemPosition()));
+    }
+
+    /**
+     * @return the spinner whose selection the items of this spinner depend
+     * on, or null if there is none
+     *
+     * @see #setParentSpinner(LabelledSpinner, CascadingItemLoader, int)
+     */
+    public LabelledSpinner getParentSpinner() {
+        return mCascade == null ? null : mCascade.getParent();
+    }
+
+    /**
+     * Discards the items kept in memory for previously selected parent
+     * items, so that they are loaded again when next needed (for example,
+     * when the data they were loaded from has changed).
+     *
+     * @see #setParentSpinner(LabelledSpinner, CascadingItemLoader, int)
+     */
+    public void clearCascadeCache() {
+        if (mCascade != null) {
+            mCascade.clearCache();
+        }
+    }
+
+    /**
+     * Shows items loaded by this spinner's cascade. A new ArrayAdapter is
+     * set (without copying the items), so that the item listeners are
+     * notified even if the selected position does not change.
+     */
+    void setCascadedItems(List<?> items) {
+        setItemsArray(items);
+    }
+
+    /**
+     * Notifies the spinners which depend on this spinner of its selection
+     */
+    private void dispatchParentItemChanged(Object item) {
+        for (int i = 0; i < mDependentCascades.size(); i++) {
+            mDependentCascades.get(i).onParentItemChanged(item);
+        }
+    }
+
+    /**
+     * Called whenever the items shown in the Spinner are replaced, so that
+     * the search index can be rebuilt for them, and a selection restored
+     * before there were items can be applied.
+     *
+     * @param items The new items, or null if they are not available as a
+     *              list (e.g. from a custom adapter)
+     */
+    private void onItemsChanged(List<?> items) {
+        if (mPendingRestoredSelection != AdapterView.INVALID_POSITION
+                && mPendingRestoredSelection < mSpinner.getCount()) {
+            mSpinner.setSelection(mPendingRestoredSelection, false);
+            mPendingRestoredSelection = AdapterView.INVALID_POSITION;
+        }
+
+        mSearchItems = items;
+        mSearchIndex = null;
+        mSearchIndexGeneration++;
+        if (mSearchDialog != null) {
+            mSearchDialog.setIndex(null);
+        }
+        if (mSearchEnabled) {
+            buildSearchIndex();
+        }
+        mTextPrecomputeGeneration++;
+        if (mTextPrecomputeEnabled) {
+            precomputeRowText();
+        }
+        scheduleDropDownPrefetch();
+    }
+
+    /**
+     * Builds the search index for the current items on a background
+     * thread.
+     */
+    private void buildSearchIndex() {
+        if (mSearchItems == null || mSearchIndex != null) {
+            return;
+        }
+
+        final List<?> items = mSearchItems;
+        final int generation = mSearchIndexGeneration;
+        final Locale locale = Locale.getDefault();
+        WidgetExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final ItemSearchIndex index = ItemSearchIndex.build(items, locale);
+                WidgetExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mSearchIndexGeneration) {
+                            return;  // The items have changed since
+                        }
+                        mSearchIndex = index;
+                        if (mSearchDialog != null) {
+                            mSearchDialog.setIndex(index);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Sets whether a dialog with a search field should be shown instead of
+     * the Spinner's usual drop down. Typing in the search field lists the
+     * items with a word starting with the typed text.
+     *
+     * <p>
+     * The search index is built on a background thread when the items are
+     * set, so searching stays fast even for very large lists. Search is
+     * only available for items set through {@link #setItemsArray(List)}
+     * (or the other {@code setItemsArray} methods) and
+     * {@link #submitItems(List)} - otherwise, the usual drop down is shown.
+     * Lists passed to {@link #setItemsArray(List)} should not be modified
+     * while the index is being built.
+     * </p>
+     *
+     * @param enabled Whether or not search should be enabled
+     *
+     * @see #isSearchEnabled()
+     * @attr ref R.styleable#LabelledSpinner_searchEnabled
+     */
+    public void setSearchEnabled(boolean enabled) {
+        if (enabled == mSearchEnabled) {
+            return;
+        }
+        mSearchEnabled = enabled;
+
+        if (enabled) {
+            buildSearchIndex();
+        } else {
+            if (mSearchDialog != null) {
+                mSearchDialog.dismiss();
+                mSearchDialog = null;
+            }
+        }
+    }
+
+    /**
+     * @return whether or not a searchable dialog is shown instead of the
+     * Spinner's drop down
+     *
+     * @see #setSearchEnabled(boolean)
+     */
+    public boolean isSearchEnabled() {
+        return mSearchEnabled;
+    }
+
+    /**
+     * Sets whether the first screenful of the Spinner's drop down views
+     * should be created while the UI thread is idle, after the items are
+     * set and whenever this widget is attached to a window, so that the
+     * drop down opens without having to inflate them.
+     *
+     * <p>
+     * This only applies to items set through the {@code setItemsArray}
+     * methods and {@link #submitItems(List)}, and uses a little more
+     * memory for the views held until the drop down is opened.
+     * </p>
+     *
+     * @param enabled Whether or not drop down views should be prefetched
+     *
+     * @see #isDropDownPrefetchEnabled()
+     * @attr ref R.styleable#LabelledSpinner_prefetchDropDown
+     */
+    public void setDropDownPrefetchEnabled(boolean enabled) {
+        if (enabled == mDropDownPrefetchEnabled) {
+            return;
+        }
+        mDropDownPrefetchEnabled = enabled;
+        if (enabled) {
+            scheduleDropDownPrefetch();
+        } else if (mDropDownPrefetcher != null) {
+            mDropDownPrefetcher.cancel();
+        }
+    }
+
+    /**
+     * @return whether or not drop down views are created ahead of time
+     *
+     * @see #setDropDownPrefetchEnabled(boolean)
+     */
+    public boolean isDropDownPrefetchEnabled() {
+        return mDropDownPrefetchEnabled;
+    }
+
+    private void scheduleDropDownPrefetch() {
+        if (!mDropDownPrefetchEnabled || !ViewCompat.isAttachedToWindow(this)) {
+            return;  // This will be scheduled again when attached
+        }
+        if (mDropDownPrefetcher == null) {
+            mDropDownPrefetcher = new DropDownPrefetcher(mSpinner);
+        }
+        mDropDownPrefetcher.schedule();
+    }
+
+    /**
+     * Sets whether the text of the Spinner's drop down rows should be
+     * measured and laid out on a background thread when the items are
+     * set, so that showing a row only needs to look its layout up instead
+     * of measuring its text on the UI thread.
+     *
+     * <p>
+     * This only applies to items set through the {@code setItemsArray}
+     * methods and {@link #submitItems(List)}, where the drop down layout is
+     * a {@link TextView}, and only to the first 1000 items. The rows are
+     * drawn with the text size, color and padding of that TextView. Until
+     * the layouts are ready, and if the adapter's data set is changed
+     * directly, the usual TextViews are used.
+     * </p>
+     *
+     * @param enabled Whether or not the text of drop down rows should be
+     *                laid out ahead of time
+     *
+     * @see #isTextPrecomputeEnabled()
+     * @attr ref R.styleable#LabelledSpinner_precomputeText
+     */
+    public void setTextPrecomputeEnabled(boolean enabled) {
+        if (enabled == mTextPrecomputeEnabled) {
+            return;
+        }
+        mTextPrecomputeEnabled = enabled;
+        mTextPrecomputeGeneration++;
+        if (enabled) {
+            precomputeRowText();
+        } else if (mSpinner.getAdapter() instanceof PrefetchingArrayAdapter) {
+            // Discards the layouts, so that the rows are TextViews again
+            ((PrefetchingArrayAdapter<?>) mSpinner.getAdapter()).notifyDataSetChanged();
+        }
+    }
+
+    /**
+     * @return whether or not the text of drop down rows is laid out ahead
+     * of time
+     *
+     * @see #setTextPrecomputeEnabled(boolean)
+     */
+    public boolean isTextPrecomputeEnabled() {
+        return mTextPrecomputeEnabled;
+    }
+
+    /**
+     * Lays out the text of the drop down rows for the current items on a
+     * background thread.
+     */
+    private void precomputeRowText() {
+        final SpinnerAdapter spinnerAdapter = mSpinner.getAdapter();
+        if (mSearchItems == null || !(spinnerAdapter instanceof PrefetchingArrayAdapter)) {
+            return;
+        }
+        final PrefetchingArrayAdapter<?> adapter = (PrefetchingArrayAdapter<?>) spinnerAdapter;
+        if (adapter.hasRowTextLayouts()) {
+            return;
+        }
+        final TextView template = adapter.createRowTemplate(mSpinner);
+        if (template == null) {
+            return;
+        }
+
+        // The TextView only sets the color of its paint when it is drawn
+        final TextPaint paint = new TextPaint(template.getPaint());
+        paint.setColor(template.getCurrentTextColor());
+
+        // The items are copied, as the adapter's list could be changed on
+        // this thread while the layouts are being computed. Only the items
+        // that layouts are made for are needed.
+        final List<?> items = new ArrayList<>(
+                mSearchItems.subList(0, Math.min(mSearchItems.size(), RowTextLayouts.MAX_ROWS)));
+        final int generation = mTextPrecomputeGeneration;
+        final int dataSetGeneration = adapter.getGeneration();
+        WidgetExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                final RowTextLayouts layouts = RowTextLayouts.compute(items, paint);
+                WidgetExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mTextPrecomputeGeneration
+                                || mSpinner.getAdapter() != adapter || layouts == null) {
+                            return;  // The items have changed since
+                        }
+                        if (adapter.setRowTextLayouts(layouts, template, dataSetGeneration)) {
+                            scheduleDropDownPrefetch();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        scheduleDropDownPrefetch();
+        if (mReloadCascadeOnAttach) {
+            mReloadCascadeOnAttach = false;
+            final LabelledSpinner parent = mCascade.getParent();
+            mCascade.onParentItemChanged(parent.getItemAt(
+                    parent.mSpinner.getSelectedItemPosition()));
+        }
+        if (mValidateOnAttach) {
+            mValidateOnAttach = false;
+            final int position = mSpinner.getSelectedItemPosition();
+            applyValidation(position, findError(position));
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mDropDownPrefetcher != null) {
+            mDropDownPrefetcher.cancel();
+        }
+        // A load from the parent spinner would keep this widget alive, and
+        // then set items on a detached View
+        if (mCascade != null && mCascade.cancelLoad()) {
+            mReloadCascadeOnAttach = true;
+        }
+        // The pending validation would keep this widget alive, and then
+        // show its result on a detached View
+        if (mPendingValidation != null || mValidationFuture != null) {
+            cancelValidation();
+            mValidateOnAttach = true;
+        }
+    }
+
+    private void showSearchDialog() {
+        if (mSearchDialog == null) {
+            mSearchDialog = new SpinnerSearchDialog(this);
+        }
+        mSearchDialog.setIndex(mSearchIndex);
+        mSearchDialog.show();
+    }
+
+    /**
+     * Sets the currently selected item.
+     *
+     * @param position Index (starting at 0) of the data item to be selected.
+     */
+    public void setSelection(int position) {
+        mSpinner.setSelection(position);
+    }
+
+    /**
+     * Sets the currently selected item.
+     *
+     * @param position Index (starting at 0) of the data item to be selected.
+     * @param animate Whether or not the transition should be animated
+     */
+    public void setSelection(int position, boolean animate) {
+        mSpinner.setSelection(position, animate);
+    }
+
+
+    /**
+     * Interface definition for a callback to be invoked when an item in this
+     * LabelledSpinner's Spinner view has been selected.
+     */
+    public interface OnItemChosenListener {
+
+        /**
+         * Callback method to be invoked when an item in this LabelledSpinner's
+         * spinner view has been selected. This callback is invoked only when
+         * the newly selected position is different from the previously selected
+         * position or if there was no selected item.
+         *
+         * @param labelledSpinner The LabelledSpinner where the selection
+         *                        happened. This view contains the AdapterView.
+         * @param adapterView The AdapterView where the selection happened. Note
+         *                    that this AdapterView is part of the LabelledSpinner
+         *                    component.
+         * @param itemView The view within the AdapterView that was clicked.
+         * @param position The position of the view in the adapter.
+         * @param id The row id of the item that is selected.
+         */
+        void onItemChosen(View labelledSpinner, AdapterView<?> adapterView, View itemView,
+                          int position, long id);
+
+        /**
+         * Callback method to be invoked when the selection disappears from this
+         * view. The selection can disappear for instance when touch is activated
+         * or when the adapter becomes empty.
+         *
+         * @param labelledSpinner The LabelledSpinner view that contains the
+         *                        AdapterView.
+         * @param adapterView The AdapterView that now contains no selected item.
+         */
+        void onNothingChosen(View labelledSpinner, AdapterView<?> adapterView);
+    }
+
+    /**
+     * Checks whether a selected item is valid, on the UI thread.
+     *
+     * @see #addValidator(Validator)
+     */
+    public interface Validator {
+
+        /**
+         * Called on the UI thread when an item is selected. This should be
+         * quick - slow checks should use an {@link AsyncValidator} instead.
+         *
+         * @param position The position of the selected item
+         * @param item The selected item, which may be null (for example,
+         *             if it is from a {@link PagedItemSource} and has not
+         *             been loaded yet)
+         * @return the error text to show, or null if the item is valid
+         */
+        CharSequence validate(int position, Object item);
+    }
+
+    /**
+     * Checks whether a selected item is valid, on a background thread.
+     *
+     * @see #addAsyncValidator(AsyncValidator)
+     */
+    public interface AsyncValidator {
+
+        /**
+         * Called on a background thread once the selection has stopped
+         * changing. If the selection changes while this is running, the
+         * thread is interrupted and the result is ignored, so long checks
+         * can stop early when {@link Thread#isInterrupted()} is true.
+         *
+         * @param position The position of the selected item
+         * @param item The selected item, which may be null
+         * @return the error text to show, or null if the item is valid
+         */
+        CharSequence validate(int position, Object item);
+    }
+
+    /**
+     * Register a callback to be invoked when an item in this AdapterView has
      * been selected.
      * This would be similar to setting an OnItemSelectedListener for a normal
      * Spinner component.
@@ -544,29 +1630,320 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      */
     @Override
     public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
-        if (mOnItemChosenListener != null) {
-            if (mDefaultErrorEnabled) {
-                if (position == 0) {
-                    // If the first item is selected (e.g. a prompt), the error is shown
-                    mErrorLabel.setText(mDefaultErrorText);
-                    mDivider.setBackgroundColor(ContextCompat.getColor(
-                            getContext(), R.color.widget_labelled_spinner_error));
-                } else {
-                    mErrorLabel.setText(" ");
-                    mDivider.setBackgroundColor(mWidgetColor);
-                }
-            }
+        if (!mDependentCascades.isEmpty()) {
+            dispatchParentItemChanged(getItemAt(position));
+        }
+        if (mGroup != null) {
+            // The group validates all of its spinners together
+            mGroup.onSelectionChanged(this);
+        } else {
+            validateSelection(position);
+        }
 
+        if (mOnItemChosenListener != null) {
             // 'this' refers to this LabelledSpinner component
             mOnItemChosenListener.onItemChosen(this, parent, view, position, id);
         }
     }
 
+    /**
+     * Adds a validator which checks each item when it is selected. The
+     * validators are run in the order they were added, on the UI thread,
+     * and the first error found is shown.
+     *
+     * @param validator The validator to add
+     *
+     * @see #removeValidator(Validator)
+     * @see #addAsyncValidator(AsyncValidator)
+     */
+    public void addValidator(Validator validator) {
+        if (!mValidators.contains(validator)) {
+            mValidators.add(validator);
+        }
+    }
+
+    /**
+     * @param validator The validator to remove
+     *
+     * @see #addValidator(Validator)
+     */
+    public void removeValidator(Validator validator) {
+        mValidators.remove(validator);
+    }
+
+    /**
+     * Adds a validator which checks each selected item on a background
+     * thread, for checks that are too slow for the UI thread.
+     *
+     * <p>
+     * Asynchronous validators are only run if the item passes the default
+     * error check and all of the validators added with
+     * {@link #addValidator(Validator)}, and only once the selection has
+     * not changed for the validation delay, so that scrolling through
+     * items does not start a validation for each one. If the selection
+     * changes while they are running, they are cancelled and their result
+     * is ignored. Until the result is known, the previous error (if any)
+     * stays shown.
+     * </p>
+     *
+     * @param validator The validator to add
+     *
+     * @see #removeAsyncValidator(AsyncValidator)
+     * @see #setValidationDelay(long)
+     */
+    public void addAsyncValidator(AsyncValidator validator) {
+        if (!mAsyncValidators.contains(validator)) {
+            mAsyncValidators.add(validator);
+        }
+    }
+
+    /**
+     * @param validator The validator to remove
+     *
+     * @see #addAsyncValidator(AsyncValidator)
+     */
+    public void removeAsyncValidator(AsyncValidator validator) {
+        mAsyncValidators.remove(validator);
+    }
+
+    /**
+     * Sets how long the selection must stay the same before asynchronous
+     * validators are run. The default is {@link #DEFAULT_VALIDATION_DELAY}.
+     *
+     * @param delayMillis The delay in milliseconds
+     *
+     * @see #addAsyncValidator(AsyncValidator)
+     */
+    public void setValidationDelay(long delayMillis) {
+        mValidationDelay = Math.max(0, delayMillis);
+    }
+
+    /**
+     * @return the time, in milliseconds, that the selection must stay the
+     * same before asynchronous validators are run
+     */
+    public long getValidationDelay() {
+        return mValidationDelay;
+    }
+
+    /**
+     * @return the group this spinner has been added to, or null if it is
+     * not in a group
+     *
+     * @see LabelledSpinnerGroup#addSpinner(LabelledSpinner)
+     */
+    public LabelledSpinnerGroup getGroup() {
+        return mGroup;
+    }
+
+    void setGroup(LabelledSpinnerGroup group) {
+        mGroup = group;
+    }
+
+    /**
+     * Validates the selected item again, for example after the rules used
+     * by a validator have changed.
+     */
+    public void validate() {
+        validateSelection(mSpinner.getSelectedItemPosition());
+    }
+
+    /**
+     * @return true if asynchronous validators are waiting to run or
+     * running for the selected item
+     */
+    public boolean isValidating() {
+        return mPendingValidation != null || mValidationFuture != null;
+    }
+
+    /**
+     * Shows an error on the error label and colors the divider line with
+     * the error color, or clears the error if null is given. Any validation
+     * still in progress is cancelled, so that its result does not replace
+     * this error.
+     *
+     * @param error The error text, or null to clear the error
+     *
+     * @see #getError()
+     */
+    public void setError(CharSequence error) {
+        cancelValidation();
+        showError(error);
+    }
+
+    /**
+     * @return the error currently shown, or null if there is none
+     */
+    public CharSequence getError() {
+        return mErrorShowing ? mErrorText : null;
+    }
+
+    /**
+     * Runs the validators for the item at a position, showing the first
+     * error found by the synchronous validators straight away and
+     * scheduling the asynchronous validators if there is none.
+     */
+    private void validateSelection(int position) {
+        if (hasValidation()) {
+            applyValidation(position, findError(position));
+        }
+    }
+
+    /**
+     * @return true if the default error or any validators are enabled
+     */
+    boolean hasValidation() {
+        return mDefaultErrorEnabled || !mValidators.isEmpty() || !mAsyncValidators.isEmpty();
+    }
+
+    /**
+     * Runs the default error check and the synchronous validators for the
+     * item at a position, without showing the result.
+     *
+     * @return the first error found, or null if there is none
+     */
+    CharSequence findError(int position) {
+        // If the first item is selected (e.g. a prompt), the default error is shown
+        CharSequence error = mDefaultErrorEnabled && position == 0 ? mDefaultErrorText : null;
+        if (error != null || mValidators.isEmpty()) {
+            return error;
+        }
+
+        final Object item = getItemAt(position);
+        for (int i = 0; error == null && i < mValidators.size(); i++) {
+            error = mValidators.get(i).validate(position, item);
+        }
+        return error;
+    }
+
+    private Object getItemAt(int position) {
+        return position == AdapterView.INVALID_POSITION
+                ? null : mSpinner.getItemAtPosition(position);
+    }
+
+    /**
+     * Shows the result of {@link #findError(int)}, cancelling any previous
+     * validation, and schedules the asynchronous validators if there was
+     * no error.
+     *
+     * @param position The position of the item that was validated
+     * @param error The error found for it, or null
+     */
+    void applyValidation(final int position, CharSequence error) {
+        cancelValidation();
+        if (error != null || mAsyncValidators.isEmpty()) {
+            showError(error);
+            return;
+        }
+
+        final Object item = getItemAt(position);
+        final int generation = mValidationGeneration;
+        final AsyncValidator[] validators =
+                mAsyncValidators.toArray(new AsyncValidator[mAsyncValidators.size()]);
+        mPendingValidation = new Runnable() {
+            @Override
+            public void run() {
+                mPendingValidation = null;
+                mValidationFuture = WidgetExecutors.background().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        CharSequence asyncError = null;
+                        for (int i = 0; asyncError == null && i < validators.length; i++) {
+                            if (Thread.currentThread().isInterrupted()) {
+                                return;  // Cancelled by a newer selection
+                            }
+                            asyncError = validators[i].validate(position, item);
+                        }
+
+                        final CharSequence result = asyncError;
+                        WidgetExecutors.mainHandler().post(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (generation != mValidationGeneration) {
+                                    return;  // The selection has changed since
+                                }
+                                mValidationFuture = null;
+                                showError(result);
+                            }
+                        });
+                    }
+                });
+            }
+        };
+        WidgetExecutors.mainHandler().postDelayed(mPendingValidation, mValidationDelay);
+    }
+
+    /**
+     * Cancels any asynchronous validation waiting to start or running, and
+     * makes sure that the result of one already finished is not shown.
+     */
+    private void cancelValidation() {
+        mValidationGeneration++;
+        mValidateOnAttach = false;
+        if (mPendingValidation != null) {
+            WidgetExecutors.mainHandler().removeCallbacks(mPendingValidation);
+            mPendingValidation = null;
+        }
+        if (mValidationFuture != null) {
+            mValidationFuture.cancel(true);
+            mValidationFuture = null;
+        }
+    }
+
+    /**
+     * Shows an error, or clears it if null. Nothing is updated (or
+     * allocated) unless the text or color actually changes.
+     */
+    private void showError(CharSequence error) {
+        mErrorShowing = error != null;
+        setErrorText(mErrorShowing ? error : " ");
+        setDividerColor(mErrorShowing ? mErrorColor : mWidgetColor);
+    }
+
+    /**
+     * Updates the text shown on the error label, in either rendering mode,
+     * if it has changed
+     */
+    private void setErrorText(CharSequence errorText) {
+        if (TextUtils.equals(errorText, mErrorText)) {
+            return;
+        }
+        mErrorText = errorText;
+        if (mFlatRendering) {
+            if (mFlatDecoration.setErrorText(errorText)) {
+                requestLayout();
+                invalidate();
+            }
+        } else {
+            mErrorLabel.setText(errorText);
+        }
+    }
+
+    /**
+     * Updates the color of the divider line, in either rendering mode, if
+     * it has changed
+     */
+    private void setDividerColor(int color) {
+        if (color == mDividerColor) {
+            return;
+        }
+        mDividerColor = color;
+        if (mFlatRendering) {
+            mFlatDecoration.setDividerColor(color);
+            invalidate();
+        } else {
+            mDivider.setBackgroundColor(color);
+        }
+    }
+
     /**
      * Implemented method from {@link android.widget.AdapterView.OnItemSelectedListener}
      */
     @Override
     public void onNothingSelected(AdapterView<?> parent) {
+        if (!mDependentCascades.isEmpty()) {
+            dispatchParentItemChanged(null);
+        }
         if (mOnItemChosenListener != null) {
             // 'this' refers to this LabelledSpinner component
             mOnItemChosenListener.onNothingChosen(this, parent);
@@ -591,53 +1968,219 @@ public class LabelledSpinner extends LinearLayout implements AdapterView.OnItemS
      * </p>
      *
      * @param indentLabel Whether or not the label will be indented
-     *
-     * @see #alignLabelWithSpinnerItem(int)
      */
     public void alignLabelWithSpinnerItem(boolean indentLabel) {
-        if (indentLabel) {
-            alignLabelWithSpinnerItem(8);
+        final Dimensions dimensions = Dimensions.get(getContext());
+        final int indentPx = indentLabel ? dimensions.mIndentWithItem : dimensions.mIndent;
+        if (indentPx == mIndentPx) {
+            return;
+        }
+        mIndentPx = indentPx;
+        if (!mFlatRendering) {
+            applyIndent();
+        }
+        // A single layout pass for all of the Views whose margins changed
+        requestLayout();
+        invalidate();
+    }
+
+    /**
+     * Applies {@link #mIndentPx} as the left margin of the label, divider
+     * and error label Views. Their layout parameters are changed in place,
+     * so this does not request a layout.
+     */
+    private void applyIndent() {
+        ((MarginLayoutParams) mLabel.getLayoutParams()).leftMargin = mIndentPx;
+        ((MarginLayoutParams) mErrorLabel.getLayoutParams()).leftMargin = mIndentPx;
+        ((MarginLayoutParams) mDivider.getLayoutParams()).leftMargin = mIndentPx;
+    }
+
+
+    /**
+     * Saves the selected item and error state. The state of the child
+     * Views is not saved separately, since their IDs would be the same in
+     * every LabelledSpinner.
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        final SavedState savedState = new SavedState(super.onSaveInstanceState());
+        savedState.mSelectedPosition = mSpinner.getSelectedItemPosition();
+        savedState.mSelectedId = mSpinner.getSelectedItemId();
+        savedState.mErrorText = mErrorText;
+        savedState.mErrorShowing = mErrorShowing;
+        return savedState;
+    }
+
+    /**
+     * Restores the selected item and error state together, before the
+     * first layout, so that the selection listener is only called once.
+     * If the items have not been set yet, the selection is applied when
+     * they are.
+     */
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        final SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+
+        mErrorShowing = savedState.mErrorShowing;
+        setErrorText(savedState.mErrorText == null ? "" : savedState.mErrorText);
+        // The colors may have changed with the configuration, so the
+        // divider color is found again rather than restored
+        setDividerColor(mErrorShowing ? mErrorColor : mWidgetColor);
+
+        final int position = findRestoredPosition(
+                savedState.mSelectedPosition, savedState.mSelectedId);
+        if (position == AdapterView.INVALID_POSITION) {
+            return;
+        }
+        if (position < mSpinner.getCount()) {
+            mSpinner.setSelection(position, false);
         } else {
-            alignLabelWithSpinnerItem(4);
+            mPendingRestoredSelection = position;
         }
     }
 
     /**
-     * A helper method responsible for adding left margins to the label and
-     * divider line underneath, used to align these to the start of the Spinner
-     * item text.
-     *
-     * @param indentDps The density-independent pixel value for the left margin
-     *
-     * @see #alignLabelWithSpinnerItem(boolean)
+     * @return the position to restore the selection to: the saved position,
+     * unless the adapter has stable IDs and the saved item has moved
      */
-    private void alignLabelWithSpinnerItem(int indentDps) {
-        MarginLayoutParams labelParams =
-                (MarginLayoutParams) mLabel.getLayoutParams();
-        labelParams.leftMargin = dpToPixels(indentDps);
-        mLabel.setLayoutParams(labelParams);
-        mErrorLabel.setLayoutParams(labelParams);
+    private int findRestoredPosition(int position, long id) {
+        final SpinnerAdapter adapter = mSpinner.getAdapter();
+        if (adapter == null || !adapter.hasStableIds() || id == AdapterView.INVALID_ROW_ID
+                || position == AdapterView.INVALID_POSITION) {
+            return position;
+        }
+        final int count = adapter.getCount();
+        if (position < count && adapter.getItemId(position) == id) {
+            return position;
+        }
+        for (int i = 0; i < count; i++) {
+            if (adapter.getItemId(i) == id) {
+                return i;
+            }
+        }
+        return position;
+    }
 
-        MarginLayoutParams dividerParams =
-                (MarginLayoutParams) mDivider.getLayoutParams();
-        dividerParams.leftMargin = dpToPixels(indentDps);
-        mDivider.setLayoutParams(dividerParams);
+    @Override
+    protected void dispatchSaveInstanceState(SparseArray<Parcelable> container) {
+        dispatchFreezeSelfOnly(container);
     }
 
+    @Override
+    protected void dispatchRestoreInstanceState(SparseArray<Parcelable> container) {
+        dispatchThawSelfOnly(container);
+    }
 
     /**
-     * A helper method responsible for the conversion of dp/dip (density-independent
-     * pixel) values to pixels, so that they can be used when setting layout
-     * parameters such as margins.
-     *
-     * @param dps The density-independent pixel value
-     * @return The pixel value from the conversion
+     * The state of a LabelledSpinner saved across configuration changes
+     */
+    static class SavedState extends BaseSavedState {
+
+        int mSelectedPosition;
+        long mSelectedId;
+        CharSequence mErrorText;
+        boolean mErrorShowing;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            mSelectedPosition = in.readInt();
+            mSelectedId = in.readLong();
+            mErrorText = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(in);
+            mErrorShowing = in.readInt() != 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeInt(mSelectedPosition);
+            out.writeLong(mSelectedId);
+            TextUtils.writeToParcel(mErrorText, out, flags);
+            out.writeInt(mErrorShowing ? 1 : 0);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR =
+                new Parcelable.Creator<SavedState>() {
+                    @Override
+                    public SavedState createFromParcel(Parcel in) {
+                        return new SavedState(in);
+                    }
+
+                    @Override
+                    public SavedState[] newArray(int size) {
+                        return new SavedState[size];
+                    }
+                };
+    }
+
+
+    /**
+     * The pixel dimensions used by LabelledSpinners, resolved once for
+     * each screen density and shared by all LabelledSpinners on screens of
+     * that density.
      */
-    private int dpToPixels(int dps) {
-        if (dps == 0) {
-            return 0;
+    private static final class Dimensions {
+
+        private static final SparseArray<Dimensions> sDimensions = new SparseArray<>();
+
+        /**
+         * The left margin of the label, divider and error label, which
+         * aligns them with other UI components
+         */
+        final int mIndent;
+
+        /**
+         * The left margin when the label is aligned with the Spinner item
+         * text
+         */
+        final int mIndentWithItem;
+
+        final int mLabelPaddingTop;
+        final int mSpinnerPaddingVertical;
+        final int mDividerHeight;
+        final int mDividerRightMargin;
+        final int mDividerBottomMargin;
+
+        private Dimensions(float density) {
+            mIndent = dpToPixels(4, density);
+            mIndentWithItem = dpToPixels(8, density);
+            mLabelPaddingTop = dpToPixels(16, density);
+            mSpinnerPaddingVertical = dpToPixels(8, density);
+            mDividerHeight = dpToPixels(1, density);
+            mDividerRightMargin = dpToPixels(4, density);
+            mDividerBottomMargin = dpToPixels(8, density);
+        }
+
+        /**
+         * @return the dimensions for the screen density of a context
+         */
+        static Dimensions get(Context context) {
+            final DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+            Dimensions dimensions = sDimensions.get(metrics.densityDpi);
+            if (dimensions == null) {
+                dimensions = new Dimensions(metrics.density);
+                sDimensions.put(metrics.densityDpi, dimensions);
+            }
+            return dimensions;
+        }
+
+        /**
+         * Converts a dp (density-independent pixel) value to pixels.
+         *
+         * @param dps The density-independent pixel value
+         * @param density The density of the screen
+         * @return The pixel value from the conversion
+         */
+        private static int dpToPixels(int dps, float density) {
+            return (int) (dps * density + 0.5f);
         }
-        final float scale = getResources().getDisplayMetrics().density;
-        return (int) (dps * scale + 0.5f);
     }
 }
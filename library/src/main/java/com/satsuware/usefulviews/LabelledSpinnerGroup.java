@@ -0,0 +1,327 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.support.v4.view.ViewCompat;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controls a group of {@link LabelledSpinner}s that make up a form, so that
+ * they are validated together and their changes are handled at most once
+ * per frame.
+ *
+ * <p>
+ * When an item is selected in a spinner in the group, the spinner does not
+ * validate itself straight away. Instead, all selections made before the
+ * next frame are collected, then every spinner in the group is checked
+ * in one pass (using its own validators, followed by the group's
+ * {@link Validator}s, which can compare fields with each other) and all of
+ * the resulting errors are shown together, so that the form is laid out
+ * once rather than once per spinner. Finally, the
+ * {@link OnSelectionsChangedListener} is notified of the spinners that
+ * changed.
+ * </p>
+ *
+ * <p>
+ * Only the spinners whose selection changed, and those whose error from
+ * the group's validators changed because of another spinner, are
+ * validated again in a pass. The others keep their errors, and their
+ * asynchronous validators are not restarted.
+ * </p>
+ *
+ * <p>
+ * Each spinner's own {@link LabelledSpinner.OnItemChosenListener} is still
+ * called straight away for each selection. Errors set with
+ * {@link LabelledSpinner#setError(CharSequence)} on a spinner with
+ * validators (or in a group with validators) are replaced at the next
+ * validation. This class should only be used on the UI thread.
+ * </p>
+ */
+public class LabelledSpinnerGroup {
+
+    private final ArrayList<LabelledSpinner> mSpinners = new ArrayList<>();
+    private final ArrayList<Validator> mValidators = new ArrayList<>();
+
+    /**
+     * The spinners with a selection since the last validation pass
+     */
+    private final ArrayList<LabelledSpinner> mChangedSpinners = new ArrayList<>();
+
+    /**
+     * The spinners added since the last validation pass, which have not
+     * been validated by the group yet
+     */
+    private final ArrayList<LabelledSpinner> mAddedSpinners = new ArrayList<>();
+
+    /**
+     * The error found for each spinner (in the same order as
+     * {@link #mSpinners}) by the last validation pass that included it
+     */
+    private final ArrayList<CharSequence> mFoundErrors = new ArrayList<>();
+
+    /**
+     * The errors found for each spinner during a validation pass, before
+     * any of them are shown
+     */
+    private CharSequence[] mErrors = new CharSequence[0];
+
+    private OnSelectionsChangedListener mOnSelectionsChangedListener;
+
+    private boolean mPassScheduled;
+
+    private final Runnable mPassRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!mPassScheduled) {
+                return;  // The pass has already been run by validate()
+            }
+            mPassScheduled = false;
+            runPass(false);
+        }
+    };
+
+
+    /**
+     * Adds a spinner to the group. Selections in the spinner are then
+     * validated by the group.
+     *
+     * @param spinner The spinner to add
+     * @throws IllegalArgumentException if the spinner is already in a group
+     *
+     * @see #removeSpinner(LabelledSpinner)
+     */
+    public void addSpinner(LabelledSpinner spinner) {
+        if (spinner.getGroup() == this) {
+            return;
+        }
+        if (spinner.getGroup() != null) {
+            throw new IllegalArgumentException("The LabelledSpinner is already in a group");
+        }
+        spinner.setGroup(this);
+        mSpinners.add(spinner);
+        mFoundErrors.add(null);
+        mAddedSpinners.add(spinner);
+    }
+
+    /**
+     * Removes a spinner from the group, so that it validates its own
+     * selections again.
+     *
+     * @param spinner The spinner to remove
+     */
+    public void removeSpinner(LabelledSpinner spinner) {
+        if (spinner.getGroup() != this) {
+            return;
+        }
+        spinner.setGroup(null);
+        mFoundErrors.remove(mSpinners.indexOf(spinner));
+        mSpinners.remove(spinner);
+        mChangedSpinners.remove(spinner);
+        mAddedSpinners.remove(spinner);
+    }
+
+    /**
+     * @return the number of spinners in the group
+     */
+    public int getSpinnerCount() {
+        return mSpinners.size();
+    }
+
+    /**
+     * @param index The index of the spinner, in the order it was added
+     * @return the spinner at this index
+     */
+    public LabelledSpinner getSpinnerAt(int index) {
+        return mSpinners.get(index);
+    }
+
+    /**
+     * Adds a validator which is run for every spinner in the group, after
+     * the spinner's own validators have found no error.
+     *
+     * @param validator The validator to add
+     *
+     * @see #removeValidator(Validator)
+     */
+    public void addValidator(Validator validator) {
+        if (!mValidators.contains(validator)) {
+            mValidators.add(validator);
+        }
+    }
+
+    /**
+     * @param validator The validator to remove
+     */
+    public void removeValidator(Validator validator) {
+        mValidators.remove(validator);
+    }
+
+    /**
+     * Sets a listener which is called at most once per frame with the
+     * spinners whose selections have changed, after they have been
+     * validated.
+     *
+     * @param listener The listener, or null to remove it
+     */
+    public void setOnSelectionsChangedListener(OnSelectionsChangedListener listener) {
+        mOnSelectionsChangedListener = listener;
+    }
+
+    /**
+     * @return the listener set with
+     * {@link #setOnSelectionsChangedListener(OnSelectionsChangedListener)}
+     */
+    public OnSelectionsChangedListener getOnSelectionsChangedListener() {
+        return mOnSelectionsChangedListener;
+    }
+
+    /**
+     * Validates every spinner in the group now, instead of waiting for the
+     * next frame, for example when the form is submitted. Any pending
+     * selection changes are handled first. Unlike the pass made after
+     * selections change, this validates every spinner again, restarting
+     * their asynchronous validators.
+     *
+     * @return true if no spinner has an error. This does not include the
+     * results of asynchronous validators, which are not known yet.
+     */
+    public boolean validate() {
+        mPassScheduled = false;
+        return runPass(true);
+    }
+
+    /**
+     * Called by a spinner in the group when an item is selected in it
+     */
+    void onSelectionChanged(LabelledSpinner spinner) {
+        if (!mChangedSpinners.contains(spinner)) {
+            mChangedSpinners.add(spinner);
+        }
+        if (mPassScheduled) {
+            return;
+        }
+        mPassScheduled = true;
+        if (ViewCompat.isAttachedToWindow(spinner)) {
+            ViewCompat.postOnAnimation(spinner, mPassRunnable);
+        } else {
+            // A detached View would not run the callback until attached
+            WidgetExecutors.mainHandler().post(mPassRunnable);
+        }
+    }
+
+    /**
+     * Finds the errors of every spinner, then shows the errors of the
+     * spinners that need validating again, then notifies the listener of
+     * the spinners that changed.
+     *
+     * @param validateAll Whether every spinner should be validated again,
+     *                    instead of only those which changed or whose
+     *                    error changed
+     * @return true if no spinner has an error
+     */
+    private boolean runPass(boolean validateAll) {
+        final int count = mSpinners.size();
+        if (mErrors.length < count) {
+            mErrors = new CharSequence[count];
+        }
+
+        // Find all of the errors first, so that validators see the form as
+        // it was before any errors changed
+        for (int i = 0; i < count; i++) {
+            final LabelledSpinner spinner = mSpinners.get(i);
+            final int position = spinner.getSpinner().getSelectedItemPosition();
+            CharSequence error = spinner.findError(position);
+            for (int j = 0; error == null && j < mValidators.size(); j++) {
+                error = mValidators.get(j).validate(this, spinner, position);
+            }
+            mErrors[i] = error;
+        }
+
+        boolean valid = true;
+        final boolean groupValidation = !mValidators.isEmpty();
+        for (int i = 0; i < count; i++) {
+            final LabelledSpinner spinner = mSpinners.get(i);
+            final CharSequence error = mErrors[i];
+            // Validating a spinner again restarts its asynchronous
+            // validators, so it is only done if its result could differ
+            final boolean needsValidation = validateAll
+                    || mChangedSpinners.contains(spinner)
+                    || mAddedSpinners.contains(spinner)
+                    || !TextUtils.equals(error, mFoundErrors.get(i));
+            if (needsValidation && (groupValidation || spinner.hasValidation())) {
+                spinner.applyValidation(spinner.getSpinner().getSelectedItemPosition(), error);
+            }
+            mFoundErrors.set(i, error);
+            valid &= error == null;
+            mErrors[i] = null;
+        }
+        mAddedSpinners.clear();
+
+        if (!mChangedSpinners.isEmpty()) {
+            if (mOnSelectionsChangedListener != null) {
+                mOnSelectionsChangedListener.onSelectionsChanged(this, mChangedSpinners);
+            }
+            mChangedSpinners.clear();
+        }
+        return valid;
+    }
+
+
+    /**
+     * Checks a spinner in a group, with access to the rest of the group so
+     * that fields can be compared with each other.
+     *
+     * @see #addValidator(Validator)
+     */
+    public interface Validator {
+
+        /**
+         * Called on the UI thread for each spinner during a validation
+         * pass, if the spinner's own validators found no error.
+         *
+         * @param group The group being validated
+         * @param spinner The spinner to check
+         * @param position The position of the item selected in the spinner
+         * @return the error text to show on the spinner, or null if it is
+         * valid
+         */
+        CharSequence validate(LabelledSpinnerGroup group, LabelledSpinner spinner, int position);
+    }
+
+    /**
+     * Interface definition for a callback to be invoked once per frame when
+     * selections have changed in a group.
+     *
+     * @see #setOnSelectionsChangedListener(OnSelectionsChangedListener)
+     */
+    public interface OnSelectionsChangedListener {
+
+        /**
+         * Called after the group has been validated.
+         *
+         * @param group The group
+         * @param changedSpinners The spinners with a new selection since
+         *                        the last call, in the order they changed.
+         *                        This list is reused, so it should not be
+         *                        kept after this call.
+         */
+        void onSelectionsChanged(LabelledSpinnerGroup group, List<LabelledSpinner> changedSpinners);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.text.TextUtils;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.List;
+
+/**
+ * An adapter for a Spinner which creates its rows in code instead of
+ * inflating them from XML, and finds the label of each item only once.
+ *
+ * <p>
+ * Rows are {@link TextView}s styled with the theme's
+ * {@code spinnerItemStyle} and {@code spinnerDropDownItemStyle}, as in
+ * {@code android.R.layout.simple_spinner_item} and
+ * {@code simple_spinner_dropdown_item}, and are only reused through the
+ * {@code convertView} passed to the adapter. Labels come from a
+ * {@link LabelExtractor} (or {@link Object#toString()} by default), and
+ * are cached the first time each item is shown.
+ * </p>
+ *
+ * @param <T> The type of the items
+ *
+ * @see LabelledSpinner#setItemsArray(List, LabelExtractor)
+ */
+public class LightweightSpinnerAdapter<T> extends BaseAdapter {
+
+    /**
+     * The minimum height of drop down rows, in dp, matching
+     * {@code simple_spinner_dropdown_item}
+     */
+    private static final int DROP_DOWN_ROW_HEIGHT_DP = 48;
+
+    private final Context mContext;
+    private final int mDropDownRowHeight;
+
+    private List<T> mItems;
+    private final LabelExtractor<? super T> mLabelExtractor;
+
+    /**
+     * The labels of the items, filled in as items are shown
+     */
+    private CharSequence[] mLabels;
+
+
+    /**
+     * @param context The current context
+     * @param items The items. This list is used directly, so
+     *              {@link #setItems(List)} should be called if it changes.
+     */
+    public LightweightSpinnerAdapter(Context context, List<T> items) {
+        this(context, items, null);
+    }
+
+    /**
+     * @param context The current context
+     * @param items The items. This list is used directly, so
+     *              {@link #setItems(List)} should be called if it changes.
+     * @param labelExtractor Finds the label of each item, or null to use
+     *                       {@link Object#toString()}
+     */
+    public LightweightSpinnerAdapter(Context context, List<T> items,
+                                     LabelExtractor<? super T> labelExtractor) {
+        mContext = context;
+        mDropDownRowHeight = Math.round(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP,
+                DROP_DOWN_ROW_HEIGHT_DP, context.getResources().getDisplayMetrics()));
+        mLabelExtractor = labelExtractor;
+        setItems(items);
+    }
+
+    /**
+     * Replaces the items, discarding the cached labels
+     *
+     * @param items The new items
+     */
+    public void setItems(List<T> items) {
+        mItems = items;
+        mLabels = new CharSequence[items.size()];
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Discards the cached labels, so that they are found again when next
+     * shown (for example, after the items have been modified in a way
+     * that changes their labels).
+     */
+    public void invalidateLabels() {
+        mLabels = new CharSequence[mItems.size()];
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @param position The position of the item
+     * @return the label of the item at this position
+     */
+    public CharSequence getLabel(int position) {
+        CharSequence label = mLabels[position];
+        if (label == null) {
+            final T item = mItems.get(position);
+            if (mLabelExtractor != null) {
+                label = mLabelExtractor.getLabel(item);
+            } else {
+                label = item instanceof CharSequence ? (CharSequence) item : String.valueOf(item);
+            }
+            if (label == null) {
+                label = "";
+            }
+            mLabels[position] = label;
+        }
+        return label;
+    }
+
+    @Override
+    public int getCount() {
+        return mItems.size();
+    }
+
+    @Override
+    public T getItem(int position) {
+        return mItems.get(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        final TextView row = convertView == null
+                ? createRow(android.R.attr.spinnerItemStyle)
+                : (TextView) convertView;
+        row.setText(getLabel(position));
+        return row;
+    }
+
+    @Override
+    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+        TextView row = (TextView) convertView;
+        if (row == null) {
+            row = createRow(android.R.attr.spinnerDropDownItemStyle);
+            row.setMinHeight(mDropDownRowHeight);
+            row.setLayoutParams(new AbsListView.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        }
+        row.setText(getLabel(position));
+        return row;
+    }
+
+    private TextView createRow(int styleAttr) {
+        final TextView row = new TextView(mContext, null, styleAttr);
+        row.setSingleLine(true);
+        row.setEllipsize(TextUtils.TruncateAt.END);
+        row.setGravity(Gravity.CENTER_VERTICAL | Gravity.START);
+        return row;
+    }
+
+
+    /**
+     * Finds the label shown for an item in a {@link LightweightSpinnerAdapter}.
+     *
+     * @param <T> The type of the items
+     */
+    public interface LabelExtractor<T> {
+
+        /**
+         * Called on the UI thread the first time an item is shown. The
+         * label is then cached until the items change.
+         *
+         * @param item The item
+         * @return the label to show for the item
+         */
+        CharSequence getLabel(T item);
+    }
+}
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The difference between two lists, as a sequence of insertions and
+ * removals that transforms the old list into the new one.
+ *
+ * <p>
+ * This is calculated using Myers' diff algorithm, after skipping any
+ * common prefix and suffix (so small changes to large lists are cheap).
+ * Items are compared using {@link Object#equals(Object)}. Because
+ * calculating the diff can take some time for large lists, it should be
+ * done on a background thread.
+ * </p>
+ *
+ * <p>
+ * If the lists differ by more than {@link #MAX_EDIT_DISTANCE} edits, the
+ * diff is not calculated and the result {@link #replacesAll() replaces
+ * all} items instead.
+ * </p>
+ */
+final class ListDiff {
+
+    /**
+     * The maximum number of insertions and removals that will be
+     * calculated. Beyond this, the memory needed to find the shortest
+     * edit script is not worth it compared to replacing all items.
+     */
+    static final int MAX_EDIT_DISTANCE = 1000;
+
+    private static final int OP_REMOVE = 0;
+    private static final int OP_INSERT = 1;
+
+    private final boolean mReplacesAll;
+
+    /**
+     * The operations, in the order they should be applied (from the end of
+     * the list towards the start, so that earlier indices stay valid).
+     * Each is encoded as {@code (index << 1) | type}.
+     */
+    private final int[] mOps;
+
+    /**
+     * For each insertion in {@link #mOps}, the position in the new list of
+     * the item to insert
+     */
+    private final int[] mInsertedPositions;
+
+    private final int mOpCount;
+
+    /**
+     * The position in the new list of each item from the old list, or -1
+     * if it was removed. Items that were moved map to their new position.
+     */
+    private final int[] mOldToNew;
+
+
+    private ListDiff(boolean replacesAll, int[] ops, int[] insertedPositions, int opCount,
+                     int[] oldToNew) {
+        mReplacesAll = replacesAll;
+        mOps = ops;
+        mInsertedPositions = insertedPositions;
+        mOpCount = opCount;
+        mOldToNew = oldToNew;
+    }
+
+    /**
+     * @return whether the lists were too different to calculate a diff,
+     * so all items should be replaced
+     */
+    boolean replacesAll() {
+        return mReplacesAll;
+    }
+
+    /**
+     * @return whether the new list differs from the old list at all
+     */
+    boolean hasChanges() {
+        return mReplacesAll || mOpCount > 0;
+    }
+
+    /**
+     * @return the number of insertions and removals
+     */
+    int getOpCount() {
+        return mOpCount;
+    }
+
+    /**
+     * @param oldPosition The position of an item in the old list
+     * @return the position of the same item in the new list, or -1 if it
+     * was removed
+     */
+    int getNewPosition(int oldPosition) {
+        if (oldPosition < 0 || oldPosition >= mOldToNew.length) {
+            return -1;
+        }
+        return mOldToNew[oldPosition];
+    }
+
+    /**
+     * Applies the insertions and removals to a list, which must contain
+     * the same items as the old list this diff was calculated from.
+     *
+     * @param target The list to modify
+     * @param newList The new list this diff was calculated from
+     */
+    <T> void applyTo(List<T> target, List<T> newList) {
+        if (mReplacesAll) {
+            target.clear();
+            target.addAll(newList);
+            return;
+        }
+
+        for (int i = 0; i < mOpCount; i++) {
+            final int index = mOps[i] >> 1;
+            if ((mOps[i] & 1) == OP_INSERT) {
+                target.add(index, newList.get(mInsertedPositions[i]));
+            } else {
+                target.remove(index);
+            }
+        }
+    }
+
+
+    /**
+     * Calculates the difference between two lists.
+     *
+     * @param oldList The old list
+     * @param newList The new list
+     * @return the difference between the two lists
+     */
+    static ListDiff calculate(List<?> oldList, List<?> newList) {
+        final int oldSize = oldList.size();
+        final int newSize = newList.size();
+
+        final int[] oldToNew = new int[oldSize];
+        Arrays.fill(oldToNew, -1);
+
+        // Skip the common prefix and suffix
+        int start = 0;
+        while (start < oldSize && start < newSize
+                && equal(oldList.get(start), newList.get(start))) {
+            oldToNew[start] = start;
+            start++;
+        }
+        int oldEnd = oldSize;
+        int newEnd = newSize;
+        while (oldEnd > start && newEnd > start
+                && equal(oldList.get(oldEnd - 1), newList.get(newEnd - 1))) {
+            oldEnd--;
+            newEnd--;
+            oldToNew[oldEnd] = newEnd;
+        }
+
+        final int n = oldEnd - start;
+        final int m = newEnd - start;
+        if (n == 0 && m == 0) {
+            return new ListDiff(false, new int[0], new int[0], 0, oldToNew);
+        }
+
+        final int limit = Math.min(n + m, MAX_EDIT_DISTANCE);
+        final List<int[]> trace = findShortestPath(oldList, newList, start, n, m, limit);
+        if (trace == null) {
+            return replaceAll(oldList, newList);
+        }
+
+        // Walk back along the path, recording the operations from the end
+        // of the list towards the start
+        final int d = trace.size() - 1;
+        final int[] ops = new int[d];
+        final int[] insertedPositions = new int[d];
+        int opCount = 0;
+
+        int x = n;
+        int y = m;
+        for (int step = d; step > 0; step--) {
+            final int[] previous = trace.get(step - 1);
+            final int k = x - y;
+            final boolean insertion = k == -step
+                    || (k != step && previous[k - 1 + step - 1] < previous[k + 1 + step - 1]);
+            final int previousK = insertion ? k + 1 : k - 1;
+            final int previousX = previous[previousK + step - 1];
+            final int previousY = previousX - previousK;
+
+            // Items on the diagonal are unchanged
+            final int snakeX = insertion ? previousX : previousX + 1;
+            final int snakeY = insertion ? previousY + 1 : previousY;
+            while (x > snakeX && y > snakeY) {
+                x--;
+                y--;
+                oldToNew[start + x] = start + y;
+            }
+
+            if (insertion) {
+                y--;
+                ops[opCount] = ((start + x) << 1) | OP_INSERT;
+                insertedPositions[opCount] = start + y;
+            } else {
+                x--;
+                ops[opCount] = ((start + x) << 1) | OP_REMOVE;
+            }
+            opCount++;
+        }
+        while (x > 0 && y > 0) {
+            x--;
+            y--;
+            oldToNew[start + x] = start + y;
+        }
+
+        findMoves(oldList, newList, ops, insertedPositions, opCount, oldToNew);
+        return new ListDiff(false, ops, insertedPositions, opCount, oldToNew);
+    }
+
+    /**
+     * Runs the forward pass of Myers' algorithm over the middle sections
+     * of the lists.
+     *
+     * @return the furthest reaching x values for each diagonal after each
+     * number of edits (where index {@code i} of the array for {@code d}
+     * edits is diagonal {@code i - d}), or null if the lists differ by
+     * more than {@code limit} edits
+     */
+    private static List<int[]> findShortestPath(List<?> oldList, List<?> newList, int start,
+                                                int n, int m, int limit) {
+        final int offset = limit + 1;
+        final int[] v = new int[2 * limit + 3];
+        final List<int[]> trace = new ArrayList<>();
+
+        for (int d = 0; d <= limit; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && v[k - 1 + offset] < v[k + 1 + offset])) {
+                    x = v[k + 1 + offset];
+                } else {
+                    x = v[k - 1 + offset] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m
+                        && equal(oldList.get(start + x), newList.get(start + y))) {
+                    x++;
+                    y++;
+                }
+                v[k + offset] = x;
+
+                if (x >= n && y >= m) {
+                    trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+                    return trace;
+                }
+            }
+            trace.add(Arrays.copyOfRange(v, offset - d, offset + d + 1));
+        }
+        return null;
+    }
+
+    /**
+     * Finds removed items which were inserted elsewhere, and maps their old
+     * positions to where they were moved.
+     */
+    private static void findMoves(List<?> oldList, List<?> newList, int[] ops,
+                                  int[] insertedPositions, int opCount, int[] oldToNew) {
+        Map<Object, Integer> inserted = null;
+        for (int i = 0; i < opCount; i++) {
+            if ((ops[i] & 1) == OP_INSERT) {
+                if (inserted == null) {
+                    inserted = new HashMap<>();
+                }
+                inserted.put(newList.get(insertedPositions[i]), insertedPositions[i]);
+            }
+        }
+        if (inserted == null) {
+            return;
+        }
+
+        for (int i = 0; i < oldToNew.length; i++) {
+            if (oldToNew[i] == -1) {
+                Integer newPosition = inserted.remove(oldList.get(i));
+                if (newPosition != null) {
+                    oldToNew[i] = newPosition;
+                }
+            }
+        }
+    }
+
+    private static ListDiff replaceAll(List<?> oldList, List<?> newList) {
+        Map<Object, Integer> newPositions = new HashMap<>(newList.size() * 4 / 3 + 1);
+        for (int i = newList.size() - 1; i >= 0; i--) {
+            newPositions.put(newList.get(i), i);
+        }
+
+        final int[] oldToNew = new int[oldList.size()];
+        for (int i = 0; i < oldToNew.length; i++) {
+            Integer newPosition = newPositions.get(oldList.get(i));
+            oldToNew[i] = newPosition == null ? -1 : newPosition;
+        }
+        return new ListDiff(true, new int[0], new int[0], 0, oldToNew);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import java.util.List;
+
+/**
+ * A source of items which are loaded in pages (windows of consecutive
+ * items) as they are needed, rather than all at once.
+ *
+ * <p>
+ * This is used with a {@link PagedSpinnerAdapter} (for example through
+ * {@link LabelledSpinner#setItemSource(PagedItemSource)}) for data sets
+ * that are too large to be held in memory, such as rows from a database.
+ * </p>
+ *
+ * @param <T> The type of the items
+ */
+public interface PagedItemSource<T> {
+
+    /**
+     * @return the total number of items. This is called on the UI thread,
+     * so it should be quick to compute.
+     */
+    int getCount();
+
+    /**
+     * Loads a window of consecutive items. This is called on a background
+     * thread.
+     *
+     * @param startPosition The position of the first item to load
+     * @param count The number of items to load. This may go past the end
+     *              of the data set, in which case only the remaining items
+     *              should be returned.
+     * @return the items in the window, in order
+     */
+    List<T> loadItems(int startPosition, int count);
+}
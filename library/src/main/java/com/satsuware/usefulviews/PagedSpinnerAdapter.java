@@ -0,0 +1,291 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.util.Log;
+import android.util.SparseBooleanArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An adapter for a Spinner whose items come from a
+ * {@link PagedItemSource}.
+ *
+ * <p>
+ * Items are loaded in pages on a background thread as they are needed,
+ * and at most a fixed number of pages are kept in memory - the least
+ * recently used page is evicted when this is exceeded. This means that
+ * memory use does not grow with the size of the data set. Rows for items
+ * which have not been loaded yet show a placeholder text until their
+ * page arrives.
+ * </p>
+ *
+ * @param <T> The type of the items
+ *
+ * @see LabelledSpinner#setItemSource(PagedItemSource)
+ */
+public class PagedSpinnerAdapter<T> extends BaseAdapter {
+
+    /**
+     * A tag to display on log/debugging messages for this class
+     */
+    private static final String LOG_TAG = "PagedSpinnerAdapter";
+
+    /**
+     * The default number of items in each page
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * The default number of pages kept in memory
+     */
+    public static final int DEFAULT_MAX_CACHED_PAGES = 8;
+
+    private final LayoutInflater mInflater;
+    private final PagedItemSource<T> mSource;
+    private final int mPageSize;
+
+    @LayoutRes private final int mItemRes;
+    @LayoutRes private int mDropDownItemRes;
+
+    /**
+     * The text shown for items that have not been loaded yet
+     */
+    private CharSequence mPlaceholderText;
+
+    /**
+     * The loaded pages, keyed by page index, in access order so that the
+     * least recently used page is evicted first.
+     */
+    private final LinkedHashMap<Integer, List<T>> mPages;
+
+    /**
+     * The indices of pages currently being loaded
+     */
+    private final SparseBooleanArray mPendingPages = new SparseBooleanArray();
+
+    /**
+     * Incremented when the data is refreshed, so that pages loaded before
+     * then are discarded when they arrive.
+     */
+    private int mGeneration;
+
+    private int mCount;
+
+
+    public PagedSpinnerAdapter(Context context, PagedItemSource<T> source) {
+        this(context, source, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    public PagedSpinnerAdapter(Context context, PagedItemSource<T> source, int pageSize,
+                               final int maxCachedPages) {
+        this(context, source, pageSize, maxCachedPages,
+                android.R.layout.simple_spinner_item,
+                android.R.layout.simple_spinner_dropdown_item);
+    }
+
+    /**
+     * @param context The current context
+     * @param source The source to load items from
+     * @param pageSize The number of items loaded at a time
+     * @param maxCachedPages The maximum number of pages kept in memory
+     * @param itemRes The layout resource used to create views. This must
+     *                be a {@link android.widget.TextView}.
+     * @param dropDownItemRes The layout resource used to create drop down
+     *                        views. This must be a
+     *                        {@link android.widget.TextView}.
+     */
+    public PagedSpinnerAdapter(Context context, PagedItemSource<T> source, int pageSize,
+                               final int maxCachedPages, @LayoutRes int itemRes,
+                               @LayoutRes int dropDownItemRes) {
+        if (pageSize < 1 || maxCachedPages < 1) {
+            throw new IllegalArgumentException("The page size and maximum number of " +
+                    "cached pages must be at least 1");
+        }
+
+        mInflater = LayoutInflater.from(context);
+        mSource = source;
+        mPageSize = pageSize;
+        mItemRes = itemRes;
+        mDropDownItemRes = dropDownItemRes;
+        mPlaceholderText = context.getString(R.string.widget_labelled_spinner_loading);
+
+        mPages = new LinkedHashMap<Integer, List<T>>(maxCachedPages + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+        mCount = source.getCount();
+    }
+
+    /**
+     * Sets the layout resource used to create drop down views
+     *
+     * @param dropDownItemRes The layout resource. This must be a
+     *                        {@link android.widget.TextView}.
+     */
+    public void setDropDownViewResource(@LayoutRes int dropDownItemRes) {
+        mDropDownItemRes = dropDownItemRes;
+    }
+
+    /**
+     * Sets the text shown for items which are still being loaded
+     *
+     * @param placeholderText The placeholder text
+     */
+    public void setPlaceholderText(CharSequence placeholderText) {
+        mPlaceholderText = placeholderText;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Discards all loaded pages and obtains the item count again. This
+     * should be called when the data in the {@link PagedItemSource} has
+     * changed.
+     */
+    public void refresh() {
+        mGeneration++;
+        mPages.clear();
+        mPendingPages.clear();
+        mCount = mSource.getCount();
+        notifyDataSetChanged();
+    }
+
+    /**
+     * @return the source that items are loaded from
+     */
+    public PagedItemSource<T> getSource() {
+        return mSource;
+    }
+
+    /**
+     * @param position The position of the item
+     * @return whether or not the item at this position has been loaded
+     * (and is still in memory)
+     */
+    public boolean isItemLoaded(int position) {
+        return mPages.containsKey(position / mPageSize);
+    }
+
+    @Override
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * Returns the item at the given position. If the item has not been
+     * loaded yet, its page will start loading and null will be returned.
+     */
+    @Override
+    public T getItem(int position) {
+        final int pageIndex = position / mPageSize;
+        final List<T> page = mPages.get(pageIndex);
+        if (page == null) {
+            loadPage(pageIndex);
+            return null;
+        }
+
+        // Load the next page in advance when nearing the end of this one
+        if (position % mPageSize >= mPageSize * 3 / 4) {
+            loadPage(pageIndex + 1);
+        }
+
+        final int indexInPage = position % mPageSize;
+        return indexInPage < page.size() ? page.get(indexInPage) : null;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        return createViewFromResource(position, convertView, parent, mItemRes);
+    }
+
+    @Override
+    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+        return createViewFromResource(position, convertView, parent, mDropDownItemRes);
+    }
+
+    private View createViewFromResource(int position, View convertView, ViewGroup parent,
+                                        @LayoutRes int resource) {
+        final TextView textView = convertView == null
+                ? (TextView) mInflater.inflate(resource, parent, false)
+                : (TextView) convertView;
+
+        final T item = getItem(position);
+        textView.setText(item == null ? mPlaceholderText : item.toString());
+        return textView;
+    }
+
+    private void loadPage(final int pageIndex) {
+        final int startPosition = pageIndex * mPageSize;
+        if (startPosition >= mCount || mPendingPages.get(pageIndex)
+                || mPages.containsKey(pageIndex)) {
+            return;
+        }
+        mPendingPages.put(pageIndex, true);
+
+        final int generation = mGeneration;
+        final int count = Math.min(mPageSize, mCount - startPosition);
+        WidgetExecutors.background().execute(new Runnable() {
+            @Override
+            public void run() {
+                List<T> loaded;
+                try {
+                    loaded = mSource.loadItems(startPosition, count);
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to load items " + startPosition + " to " +
+                            (startPosition + count - 1), e);
+                    loaded = null;
+                }
+
+                final List<T> page = loaded;
+                WidgetExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onPageLoaded(generation, pageIndex, page);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onPageLoaded(int generation, int pageIndex, List<T> page) {
+        if (generation != mGeneration) {
+            return;  // The data has been refreshed since this was requested
+        }
+        mPendingPages.delete(pageIndex);
+        if (page == null) {
+            return;  // Loading failed, so it will be tried again when next needed
+        }
+        mPages.put(pageIndex, page);
+        notifyDataSetChanged();
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.text.BoringLayout;
+import android.text.Layout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.view.View;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.accessibility.AccessibilityNodeInfo;
+import android.widget.Checkable;
+import android.widget.CheckedTextView;
+import android.widget.TextView;
+
+/**
+ * A drop down row which draws a text layout created ahead of time by
+ * {@link RowTextLayouts}, instead of measuring and laying out its text
+ * like a {@link TextView}.
+ *
+ * <p>
+ * The row copies the padding, height, text colors and check mark of a
+ * template TextView inflated from the drop down layout, and the text is
+ * laid out with the template's paint, so that it looks the same as the
+ * rows it replaces. Like a {@link CheckedTextView}, it is
+ * {@link Checkable} (so the drop down list can mark the selected item),
+ * its text color follows its drawable state, and its text is reported to
+ * accessibility services.
+ * </p>
+ */
+final class PrecomputedTextRow extends View implements Checkable {
+
+    private static final int[] CHECKED_STATE_SET = {android.R.attr.state_checked};
+
+    /**
+     * The height of a row with a single line of text
+     */
+    private final int mMinRowHeight;
+
+    private Layout mLayout;
+
+    /**
+     * A copy of {@link #mLayout} ellipsized to fit the row, or null if the
+     * row is wide enough for the full text (or it cannot be ellipsized)
+     */
+    private Layout mEllipsizedLayout;
+
+    /**
+     * The width that {@link #mEllipsizedLayout} was made for, or 0 if it
+     * has not been made
+     */
+    private int mEllipsizedWidth;
+
+    /**
+     * The text colors for each drawable state, from the template
+     */
+    private final ColorStateList mTextColors;
+
+    /**
+     * The check mark copied from the template, or null if it has none.
+     * As in a CheckedTextView, the template's right padding includes the
+     * width of the check mark, which is drawn inside it.
+     */
+    private final Drawable mCheckMarkDrawable;
+
+    private boolean mChecked;
+
+
+    PrecomputedTextRow(Context context, TextView template, int minRowHeight) {
+        super(context);
+        mMinRowHeight = minRowHeight;
+        mTextColors = template.getTextColors();
+        mCheckMarkDrawable = copyCheckMarkDrawable(template);
+        if (mCheckMarkDrawable != null) {
+            mCheckMarkDrawable.setCallback(this);
+        }
+        setPadding(template.getPaddingLeft(), template.getPaddingTop(),
+                template.getPaddingRight(), template.getPaddingBottom());
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static Drawable copyCheckMarkDrawable(TextView template) {
+        // The check mark cannot be read before Jelly Bean
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN
+                || !(template instanceof CheckedTextView)) {
+            return null;
+        }
+        final Drawable checkMark = ((CheckedTextView) template).getCheckMarkDrawable();
+        if (checkMark == null || checkMark.getConstantState() == null) {
+            return null;
+        }
+        // Each row needs its own Drawable, as it holds the row's state
+        final Drawable copy = checkMark.getConstantState().newDrawable().mutate();
+        copy.setBounds(0, 0, copy.getIntrinsicWidth(), copy.getIntrinsicHeight());
+        return copy;
+    }
+
+    @Override
+    public void setChecked(boolean checked) {
+        if (checked != mChecked) {
+            mChecked = checked;
+            refreshDrawableState();
+        }
+    }
+
+    @Override
+    public boolean isChecked() {
+        return mChecked;
+    }
+
+    @Override
+    public void toggle() {
+        setChecked(!mChecked);
+    }
+
+    @Override
+    protected int[] onCreateDrawableState(int extraSpace) {
+        final int[] drawableState = super.onCreateDrawableState(extraSpace + 1);
+        if (mChecked) {
+            mergeDrawableStates(drawableState, CHECKED_STATE_SET);
+        }
+        return drawableState;
+    }
+
+    @Override
+    protected void drawableStateChanged() {
+        super.drawableStateChanged();
+        if (mCheckMarkDrawable != null && mCheckMarkDrawable.isStateful()) {
+            mCheckMarkDrawable.setState(getDrawableState());
+        }
+        // The text color may depend on the state
+        invalidate();
+    }
+
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mCheckMarkDrawable || super.verifyDrawable(who);
+    }
+
+    @Override
+    public void jumpDrawablesToCurrentState() {
+        super.jumpDrawablesToCurrentState();
+        if (mCheckMarkDrawable != null) {
+            mCheckMarkDrawable.jumpToCurrentState();
+        }
+    }
+
+    /**
+     * Sets the layout to draw. This only needs a new layout pass if the
+     * size of the text has changed.
+     */
+    void setLayout(Layout layout) {
+        if (layout == mLayout) {
+            return;
+        }
+        final boolean sizeChanged = mLayout == null
+                || layout.getWidth() != mLayout.getWidth()
+                || layout.getHeight() != mLayout.getHeight();
+        mLayout = layout;
+        mEllipsizedLayout = null;
+        mEllipsizedWidth = 0;
+        if (sizeChanged) {
+            requestLayout();
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int textWidth = mLayout == null ? 0 : mLayout.getWidth();
+        int contentHeight = mLayout == null ? 0 : mLayout.getHeight();
+        if (mCheckMarkDrawable != null) {
+            contentHeight = Math.max(contentHeight, mCheckMarkDrawable.getIntrinsicHeight());
+        }
+        setMeasuredDimension(
+                resolveSize(textWidth + getPaddingLeft() + getPaddingRight(), widthMeasureSpec),
+                resolveSize(Math.max(mMinRowHeight,
+                        contentHeight + getPaddingTop() + getPaddingBottom()), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        final int availableHeight = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (mCheckMarkDrawable != null) {
+            // Drawn at the start of the right padding, centred vertically
+            canvas.save();
+            canvas.translate(getWidth() - getPaddingRight(), getPaddingTop()
+                    + (availableHeight - mCheckMarkDrawable.getIntrinsicHeight()) / 2);
+            mCheckMarkDrawable.draw(canvas);
+            canvas.restore();
+        }
+
+        if (mLayout == null) {
+            return;
+        }
+        final int availableWidth = getWidth() - getPaddingLeft() - getPaddingRight();
+        final Layout layout = getLayoutToDraw(availableWidth);
+
+        // The paint is only used on the UI thread once the layouts have
+        // been made, so its color can be set for this row's state
+        layout.getPaint().setColor(
+                mTextColors.getColorForState(getDrawableState(), mTextColors.getDefaultColor()));
+
+        // Centre the text vertically, as in the drop down TextViews
+        canvas.save();
+        canvas.clipRect(getPaddingLeft(), getPaddingTop(),
+                getWidth() - getPaddingRight(), getHeight() - getPaddingBottom());
+        canvas.translate(getPaddingLeft(),
+                getPaddingTop() + (availableHeight - layout.getHeight()) / 2);
+        layout.draw(canvas);
+        canvas.restore();
+    }
+
+    /**
+     * @return the precomputed layout if the text fits, or an ellipsized
+     * copy of it otherwise. Text which cannot be ellipsized on a single
+     * line (such as text with several lines) is clipped instead.
+     */
+    private Layout getLayoutToDraw(int availableWidth) {
+        if (availableWidth <= 0 || mLayout.getWidth() <= availableWidth) {
+            return mLayout;
+        }
+        if (mEllipsizedWidth != availableWidth) {
+            final CharSequence text = mLayout.getText();
+            final TextPaint paint = mLayout.getPaint();
+            final BoringLayout.Metrics metrics = BoringLayout.isBoring(text, paint);
+            mEllipsizedLayout = metrics == null ? null : BoringLayout.make(text, paint,
+                    availableWidth, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, metrics, true,
+                    TextUtils.TruncateAt.END, availableWidth);
+            mEllipsizedWidth = availableWidth;
+        }
+        return mEllipsizedLayout == null ? mLayout : mEllipsizedLayout;
+    }
+
+    @Override
+    public void onInitializeAccessibilityEvent(AccessibilityEvent event) {
+        super.onInitializeAccessibilityEvent(event);
+        event.setClassName(CheckedTextView.class.getName());
+        event.setChecked(mChecked);
+    }
+
+    @Override
+    public void onPopulateAccessibilityEvent(AccessibilityEvent event) {
+        super.onPopulateAccessibilityEvent(event);
+        if (mLayout != null) {
+            event.getText().add(mLayout.getText());
+        }
+    }
+
+    @Override
+    public void onInitializeAccessibilityNodeInfo(AccessibilityNodeInfo info) {
+        super.onInitializeAccessibilityNodeInfo(info);
+        info.setClassName(CheckedTextView.class.getName());
+        info.setCheckable(true);
+        info.setChecked(mChecked);
+        if (mLayout != null) {
+            info.setText(mLayout.getText());
+        }
+    }
+}
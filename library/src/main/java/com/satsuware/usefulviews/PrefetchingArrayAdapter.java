@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.content.Context;
+import android.support.annotation.LayoutRes;
+import android.text.Layout;
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ArrayAdapter;
+import android.widget.TextView;
+
+import java.util.List;
+
+/**
+ * An {@link ArrayAdapter} whose drop down views can be created and bound
+ * ahead of time, so that they do not have to be inflated when the drop
+ * down is opened.
+ *
+ * <p>
+ * A prefetched view is used the first time its position is requested
+ * without a view to convert. All prefetched views are discarded when the
+ * data set changes, as they would show old items.
+ * </p>
+ *
+ * <p>
+ * The text of the drop down rows can also be laid out ahead of time (see
+ * {@link RowTextLayouts}), in which case rows with a layout are shown as
+ * {@link PrecomputedTextRow}s. These layouts are also discarded when the
+ * data set changes.
+ * </p>
+ *
+ * @param <T> The type of the items
+ *
+ * @see LabelledSpinner#setDropDownPrefetchEnabled(boolean)
+ * @see LabelledSpinner#setTextPrecomputeEnabled(boolean)
+ */
+class PrefetchingArrayAdapter<T> extends ArrayAdapter<T> {
+
+    private final SparseArray<View> mPrefetchedViews = new SparseArray<>();
+
+    @LayoutRes private int mDropDownRes;
+
+    /**
+     * The precomputed text layouts of the drop down rows, or null
+     */
+    private RowTextLayouts mRowTextLayouts;
+
+    /**
+     * A TextView inflated from the drop down layout, which precomputed
+     * rows copy their appearance from
+     */
+    private TextView mRowTemplate;
+    private int mRowHeight;
+
+    /**
+     * Incremented whenever the data set or the drop down layout changes,
+     * so that text layouts computed for old items are not used
+     */
+    private int mGeneration;
+
+
+    PrefetchingArrayAdapter(Context context, @LayoutRes int itemRes, List<T> items) {
+        super(context, itemRes, items);
+        mDropDownRes = itemRes;
+    }
+
+    /**
+     * Inflates the drop down layout to find the appearance of its text,
+     * so that the text of the rows can be laid out in the same way.
+     *
+     * @param parent The parent of the drop down rows, or a View of the
+     *               same type
+     * @return the inflated TextView, or null if the drop down layout is
+     * not a TextView
+     */
+    TextView createRowTemplate(ViewGroup parent) {
+        final View view = LayoutInflater.from(getContext()).inflate(mDropDownRes, parent, false);
+        if (!(view instanceof TextView)) {
+            return null;
+        }
+        final TextView template = (TextView) view;
+        final int unspecified = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        template.measure(unspecified, unspecified);
+        return template;
+    }
+
+    /**
+     * @return the current generation of the data set, to pass to
+     * {@link #setRowTextLayouts(RowTextLayouts, TextView, int)} with
+     * layouts computed from the current items
+     */
+    int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Sets the precomputed text layouts to use for the drop down rows,
+     * unless the data set has changed since they were started.
+     *
+     * @param layouts The layouts
+     * @param template The TextView (from {@link #createRowTemplate(ViewGroup)})
+     *                 whose paint the layouts were made with
+     * @param generation The value of {@link #getGeneration()} when the
+     *                   items were read to compute the layouts
+     * @return true if the layouts were set, or false if they are for
+     * items which have since changed
+     */
+    boolean setRowTextLayouts(RowTextLayouts layouts, TextView template, int generation) {
+        if (generation != mGeneration) {
+            return false;
+        }
+        mRowTextLayouts = layouts;
+        mRowTemplate = template;
+        mRowHeight = template.getMeasuredHeight();
+        mPrefetchedViews.clear();
+        return true;
+    }
+
+    /**
+     * @return true if the drop down rows have precomputed text layouts
+     */
+    boolean hasRowTextLayouts() {
+        return mRowTextLayouts != null;
+    }
+
+    /**
+     * Creates and binds the drop down view for a position, if it has not
+     * been prefetched already.
+     *
+     * @param position The position of the item
+     * @param parent The parent the drop down view will be attached to, or
+     *               a View of the same type
+     */
+    void prefetchDropDownView(int position, ViewGroup parent) {
+        if (position < getCount() && mPrefetchedViews.get(position) == null) {
+            mPrefetchedViews.put(position, createDropDownView(position, null, parent));
+        }
+    }
+
+    /**
+     * @param position The position of the item
+     * @return true if the drop down view for this position has been
+     * prefetched and not used yet
+     */
+    boolean isDropDownViewPrefetched(int position) {
+        return mPrefetchedViews.get(position) != null;
+    }
+
+    @Override
+    public View getDropDownView(int position, View convertView, ViewGroup parent) {
+        if (convertView == null) {
+            final View prefetched = mPrefetchedViews.get(position);
+            if (prefetched != null) {
+                mPrefetchedViews.remove(position);
+                if (prefetched.getParent() == null) {
+                    return prefetched;
+                }
+            }
+        }
+        return createDropDownView(position, convertView, parent);
+    }
+
+    private View createDropDownView(int position, View convertView, ViewGroup parent) {
+        final Layout layout = mRowTextLayouts == null ? null : mRowTextLayouts.get(position);
+        if (layout == null) {
+            // A precomputed row cannot be converted to show text normally
+            return super.getDropDownView(position,
+                    convertView instanceof PrecomputedTextRow ? null : convertView, parent);
+        }
+
+        final PrecomputedTextRow row = convertView instanceof PrecomputedTextRow
+                ? (PrecomputedTextRow) convertView
+                : new PrecomputedTextRow(getContext(), mRowTemplate, mRowHeight);
+        row.setLayout(layout);
+        return row;
+    }
+
+    @Override
+    public void setDropDownViewResource(@LayoutRes int resource) {
+        super.setDropDownViewResource(resource);
+        mDropDownRes = resource;
+        clearPrecomputedViews();
+    }
+
+    @Override
+    public void notifyDataSetChanged() {
+        clearPrecomputedViews();
+        super.notifyDataSetChanged();
+    }
+
+    @Override
+    public void notifyDataSetInvalidated() {
+        clearPrecomputedViews();
+        super.notifyDataSetInvalidated();
+    }
+
+    private void clearPrecomputedViews() {
+        mGeneration++;
+        mPrefetchedViews.clear();
+        mRowTextLayouts = null;
+        mRowTemplate = null;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import java.util.List;
+
+/**
+ * The text layouts of the drop down rows of a {@link LabelledSpinner},
+ * measured and laid out ahead of time (on a background thread) so that
+ * binding a row only needs to look its layout up.
+ *
+ * <p>
+ * Each layout is as wide as its text, as drop down rows show a single
+ * line. Rows narrower than this ellipsize the text when they are drawn.
+ * Only the first {@link #MAX_ROWS} items have layouts, so that very long
+ * lists do not hold a layout for every item.
+ * </p>
+ *
+ * @see LabelledSpinner#setTextPrecomputeEnabled(boolean)
+ */
+final class RowTextLayouts {
+
+    /**
+     * The maximum number of items that layouts are created for
+     */
+    static final int MAX_ROWS = 1000;
+
+    private final Layout[] mLayouts;
+
+
+    private RowTextLayouts(Layout[] layouts) {
+        mLayouts = layouts;
+    }
+
+    /**
+     * Creates the layouts for a list of items. This can be called on a
+     * background thread, as long as the items are not modified meanwhile.
+     *
+     * @param items The items, whose text is found in the same way as in
+     *              an {@link android.widget.ArrayAdapter}
+     * @param paint The paint to lay the text out with. Only its color may
+     *              be changed afterwards (by the rows drawing the layouts,
+     *              to match their state).
+     * @return the layouts, or null if the thread was interrupted
+     */
+    static RowTextLayouts compute(List<?> items, TextPaint paint) {
+        final Layout[] layouts = new Layout[Math.min(items.size(), MAX_ROWS)];
+        for (int i = 0; i < layouts.length; i++) {
+            if (Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            final Object item = items.get(i);
+            final CharSequence text = item instanceof CharSequence
+                    ? (CharSequence) item : String.valueOf(item);
+            final int width = (int) Math.ceil(Layout.getDesiredWidth(text, paint));
+            layouts[i] = new StaticLayout(text, paint, width,
+                    Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+        }
+        return new RowTextLayouts(layouts);
+    }
+
+    /**
+     * @param position The position of the item
+     * @return the layout of the item's text, or null if it does not have
+     * one
+     */
+    Layout get(int position) {
+        return position < mLayouts.length ? mLayouts[position] : null;
+    }
+}
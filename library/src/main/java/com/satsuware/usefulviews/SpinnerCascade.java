@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.util.Log;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Keeps the items of a dependent {@link LabelledSpinner} in step with the
+ * selection of its parent, loading them with a {@link CascadingItemLoader}.
+ *
+ * <p>
+ * Items are loaded on a background thread, and the items for the most
+ * recently selected parent items are kept in memory, so selecting a recent
+ * parent item again shows its items immediately. While items are loading,
+ * the dependent spinner is empty. If the parent's selection changes during
+ * a load, the load is cancelled.
+ * </p>
+ *
+ * @see LabelledSpinner#setParentSpinner(LabelledSpinner, CascadingItemLoader, int)
+ */
+final class SpinnerCascade {
+
+    private static final String LOG_TAG = "SpinnerCascade";
+
+    private final LabelledSpinner mParent;
+    private final LabelledSpinner mChild;
+    private final CascadingItemLoader<?> mLoader;
+
+    /**
+     * The loaded items for each parent item, in order of use
+     */
+    private final LinkedHashMap<Object, List<?>> mCache;
+
+    /**
+     * The parent item that the child's items are for (or are being loaded
+     * for)
+     */
+    private Object mParentItem;
+    private boolean mHasParentItem;
+
+    /**
+     * Incremented whenever the parent's selection changes, so that only
+     * the items for the latest selection are shown.
+     */
+    private int mGeneration;
+
+    private Future<?> mLoadFuture;
+
+
+    SpinnerCascade(LabelledSpinner parent, LabelledSpinner child,
+                   CascadingItemLoader<?> loader, final int maxCachedKeys) {
+        mParent = parent;
+        mChild = child;
+        mLoader = loader;
+        mCache = new LinkedHashMap<Object, List<?>>(maxCachedKeys + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, List<?>> eldest) {
+                return size() > maxCachedKeys;
+            }
+        };
+    }
+
+    LabelledSpinner getParent() {
+        return mParent;
+    }
+
+    /**
+     * Called when an item is selected in the parent spinner, or with null
+     * when nothing is selected in it.
+     */
+    void onParentItemChanged(final Object parentItem) {
+        if (mHasParentItem && (mParentItem == null
+                ? parentItem == null : mParentItem.equals(parentItem))) {
+            return;  // The child already has (or is loading) these items
+        }
+        cancel();
+        mParentItem = parentItem;
+        mHasParentItem = true;
+
+        if (parentItem == null) {
+            mChild.setCascadedItems(Collections.emptyList());
+            return;
+        }
+
+        final List<?> cached = mCache.get(parentItem);
+        if (cached != null) {
+            mChild.setCascadedItems(cached);
+            return;
+        }
+
+        mChild.setCascadedItems(Collections.emptyList());
+        final int generation = mGeneration;
+        mLoadFuture = WidgetExecutors.background().submit(new Runnable() {
+            @Override
+            public void run() {
+                List<?> loaded;
+                try {
+                    loaded = mLoader.loadItems(parentItem);
+                } catch (RuntimeException e) {
+                    Log.e(LOG_TAG, "Failed to load items for " + parentItem, e);
+                    loaded = null;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    return;  // Cancelled by a newer selection
+                }
+
+                final List<?> items = loaded;
+                WidgetExecutors.mainHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onItemsLoaded(generation, parentItem, items);
+                    }
+                });
+            }
+        });
+    }
+
+    private void onItemsLoaded(int generation, Object parentItem, List<?> items) {
+        if (generation != mGeneration) {
+            return;  // The parent's selection has changed since
+        }
+        mLoadFuture = null;
+        if (items == null) {
+            // Loading failed, so it will be tried again when next selected
+            mHasParentItem = false;
+            return;
+        }
+        mCache.put(parentItem, items);
+        mChild.setCascadedItems(items);
+    }
+
+    /**
+     * Cancels any load in progress, and makes sure that the result of one
+     * already finished is not shown.
+     */
+    void cancel() {
+        mGeneration++;
+        mHasParentItem = false;
+        if (mLoadFuture != null) {
+            mLoadFuture.cancel(true);
+            mLoadFuture = null;
+        }
+    }
+
+    /**
+     * Cancels the load in progress, if there is one (for example, when the
+     * child has been detached, so that the load does not keep it alive).
+     *
+     * @return true if a load was cancelled, in which case
+     * {@link #onParentItemChanged(Object)} must be called again to load
+     * the items
+     */
+    boolean cancelLoad() {
+        if (mLoadFuture == null) {
+            return false;
+        }
+        cancel();
+        return true;
+    }
+
+    /**
+     * Discards all cached items, so that they are loaded again when next
+     * needed.
+     */
+    void clearCache() {
+        mCache.clear();
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.app.AlertDialog;
+import android.content.Context;
+import android.content.DialogInterface;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.WindowManager;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.SpinnerAdapter;
+
+/**
+ * A dialog with a search field above the items of a {@link LabelledSpinner},
+ * used in place of the Spinner's drop down when search is enabled.
+ *
+ * <p>
+ * Results are read from an {@link ItemSearchIndex} in batches, one batch
+ * per message on the UI thread, so the first results appear immediately
+ * and the rest stream into the list without blocking typing. When there is
+ * no query, the list shows the Spinner's adapter directly.
+ * </p>
+ *
+ * @see LabelledSpinner#setSearchEnabled(boolean)
+ */
+final class SpinnerSearchDialog implements TextWatcher, AdapterView.OnItemClickListener,
+        DialogInterface.OnDismissListener, Runnable {
+
+    /**
+     * The number of results added to the list at a time
+     */
+    private static final int RESULTS_PER_BATCH = 100;
+
+    private final LabelledSpinner mLabelledSpinner;
+    private final AlertDialog mDialog;
+    private final EditText mSearchField;
+    private final ResultsAdapter mResultsAdapter = new ResultsAdapter();
+
+    private ItemSearchIndex mIndex;
+    private final ItemSearchIndex.Cursor mCursor = new ItemSearchIndex.Cursor();
+
+    /**
+     * The positions (in the Spinner's adapter) of the results found so far
+     */
+    private int[] mResults = new int[RESULTS_PER_BATCH];
+    private int mResultCount;
+
+    /**
+     * Whether there is a query. Otherwise, all items are listed in order
+     * without using {@link #mResults}.
+     */
+    private boolean mFiltering;
+
+
+    SpinnerSearchDialog(LabelledSpinner labelledSpinner) {
+        mLabelledSpinner = labelledSpinner;
+        final Context context = labelledSpinner.getContext();
+
+        mSearchField = new EditText(context);
+        mSearchField.setSingleLine(true);
+        mSearchField.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_FILTER);
+        mSearchField.setHint(R.string.widget_labelled_spinner_searchHint);
+        mSearchField.addTextChangedListener(this);
+
+        final ListView listView = new ListView(context);
+        listView.setAdapter(mResultsAdapter);
+        listView.setOnItemClickListener(this);
+
+        final LinearLayout layout = new LinearLayout(context);
+        layout.setOrientation(LinearLayout.VERTICAL);
+        layout.addView(mSearchField, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+        layout.addView(listView, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, 0, 1));
+
+        mDialog = new AlertDialog.Builder(context)
+                .setTitle(labelledSpinner.getLabelText())
+                .setView(layout)
+                .create();
+        mDialog.setOnDismissListener(this);
+    }
+
+    /**
+     * Shows the dialog, listing all items until a query is typed.
+     */
+    void show() {
+        mDialog.setTitle(mLabelledSpinner.getLabelText());
+        // This restarts the query through afterTextChanged(Editable)
+        mSearchField.setText(null);
+        mDialog.getWindow().setSoftInputMode(
+                WindowManager.LayoutParams.SOFT_INPUT_STATE_VISIBLE);
+        mDialog.show();
+    }
+
+    void dismiss() {
+        mDialog.dismiss();
+    }
+
+    boolean isShowing() {
+        return mDialog.isShowing();
+    }
+
+    /**
+     * Sets the index to search with. If the dialog is showing, the current
+     * query is run again using the new index.
+     *
+     * @param index The index, or null if it is not available (yet)
+     */
+    void setIndex(ItemSearchIndex index) {
+        mIndex = index;
+        if (mDialog.isShowing()) {
+            restartQuery();
+        }
+    }
+
+    private void restartQuery() {
+        WidgetExecutors.mainHandler().removeCallbacks(this);
+        mResultCount = 0;
+
+        final CharSequence query = mSearchField.getText();
+        mFiltering = query.length() > 0;
+        if (mFiltering && mIndex != null) {
+            mIndex.startQuery(mCursor, query);
+        }
+
+        // Read the first batch straight away so that the list is never
+        // briefly empty while typing
+        run();
+    }
+
+    /**
+     * Adds the next batch of results to the list, and schedules the
+     * following batch if there are more.
+     */
+    @Override
+    public void run() {
+        if (!mFiltering || mLabelledSpinner.getSpinner().getAdapter() == null) {
+            // Nothing to stream, as all items (or none) are listed
+            mResultsAdapter.notifyDataSetChanged();
+            return;
+        }
+
+        ensureResultCapacity(mResultCount + RESULTS_PER_BATCH);
+        boolean finished;
+        if (mIndex != null) {
+            mResultCount += mIndex.nextResults(mCursor, mResults, mResultCount,
+                    RESULTS_PER_BATCH);
+            finished = mCursor.isFinished();
+        } else {
+            finished = true;  // Results will be found when the index is ready
+        }
+
+        mResultsAdapter.notifyDataSetChanged();
+        if (!finished) {
+            WidgetExecutors.mainHandler().post(this);
+        }
+    }
+
+    private void ensureResultCapacity(int capacity) {
+        if (capacity > mResults.length) {
+            int[] results = new int[Math.max(capacity, mResults.length * 2)];
+            System.arraycopy(mResults, 0, results, 0, mResultCount);
+            mResults = results;
+        }
+    }
+
+    @Override
+    public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+    @Override
+    public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+    @Override
+    public void afterTextChanged(Editable s) {
+        restartQuery();
+    }
+
+    @Override
+    public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+        mLabelledSpinner.setSelection(getAdapterPosition(position));
+        mDialog.dismiss();
+    }
+
+    @Override
+    public void onDismiss(DialogInterface dialog) {
+        WidgetExecutors.mainHandler().removeCallbacks(this);
+    }
+
+    /**
+     * @param position The position of a row in the list
+     * @return the position of its item in the Spinner's adapter
+     */
+    private int getAdapterPosition(int position) {
+        return mFiltering ? mResults[position] : position;
+    }
+
+
+    /**
+     * Lists the results, using the drop down views of the Spinner's own
+     * adapter for each row.
+     */
+    private class ResultsAdapter extends BaseAdapter {
+
+        @Override
+        public int getCount() {
+            if (mFiltering) {
+                return mResultCount;
+            }
+            final SpinnerAdapter adapter = mLabelledSpinner.getSpinner().getAdapter();
+            return adapter == null ? 0 : adapter.getCount();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return mLabelledSpinner.getSpinner().getAdapter().getItem(getAdapterPosition(position));
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return getAdapterPosition(position);
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            return mLabelledSpinner.getSpinner().getAdapter()
+                    .getDropDownView(getAdapterPosition(position), convertView, parent);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provides the threads used by the widgets in this library for work that
+ * should not block the UI thread (such as loading items), and a Handler
+ * for posting the results back to the UI thread.
+ */
+final class WidgetExecutors {
+
+    private static final int THREAD_COUNT =
+            Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 3));
+
+    private static ExecutorService sBackgroundExecutor;
+    private static Handler sMainHandler;
+
+    private WidgetExecutors() {}
+
+    /**
+     * @return a shared executor with a small number of low-priority
+     * daemon threads
+     */
+    static synchronized ExecutorService background() {
+        if (sBackgroundExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                    THREAD_COUNT, THREAD_COUNT, 30, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory());
+            executor.allowCoreThreadTimeOut(true);
+            sBackgroundExecutor = executor;
+        }
+        return sBackgroundExecutor;
+    }
+
+    /**
+     * @return a Handler for the main (UI) thread
+     */
+    static synchronized Handler mainHandler() {
+        if (sMainHandler == null) {
+            sMainHandler = new Handler(Looper.getMainLooper());
+        }
+        return sMainHandler;
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mCount = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "UsefulViews #" + mCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
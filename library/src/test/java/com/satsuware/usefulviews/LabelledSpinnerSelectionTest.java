@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Farbod Salamat-Zadeh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.satsuware.usefulviews;
+
+import android.widget.AdapterView;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class LabelledSpinnerSelectionTest {
+
+    private static final int ITEM_COUNT = 10;
+
+    private static final int WARMUP_SELECTIONS = 10000;
+    private static final int MEASURED_SELECTIONS = 1000;
+
+    private LabelledSpinner mSpinner;
+    private AdapterView<?> mAdapterView;
+
+    private com.sun.management.ThreadMXBean mThreadBean;
+
+
+    @Before
+    public void setUp() {
+        final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue("Allocation counting is not supported by this JVM",
+                threadBean instanceof com.sun.management.ThreadMXBean);
+        mThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue("Allocation counting is not supported by this JVM",
+                mThreadBean.isThreadAllocatedMemorySupported());
+        mThreadBean.setThreadAllocatedMemoryEnabled(true);
+
+        final List<String> items = new ArrayList<>(ITEM_COUNT);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            items.add("Item " + i);
+        }
+        mSpinner = new LabelledSpinner(RuntimeEnvironment.application);
+        mSpinner.setItemsArray(items);
+        mSpinner.setDefaultErrorEnabled(true);
+        mAdapterView = mSpinner.getSpinner();
+    }
+
+    @Test
+    public void selectingItemsWithoutChangingErrorDoesNotAllocate() {
+        // Select past the prompt first, so that the error is cleared once
+        // before measuring, then warm up so that only the steady state is
+        // counted (not class loading or JIT compilation)
+        selectItems(WARMUP_SELECTIONS);
+
+        // Reading the counter can allocate, so its own cost is subtracted
+        final long beforeRead = allocatedBytes();
+        final long readOverhead = allocatedBytes() - beforeRead;
+
+        final long start = allocatedBytes();
+        selectItems(MEASURED_SELECTIONS);
+        final long allocated = allocatedBytes() - start - readOverhead;
+
+        assertEquals("Bytes allocated by " + MEASURED_SELECTIONS + " selections", 0, allocated);
+    }
+
+    /**
+     * Selects items other than the first (which shows the default error),
+     * so the error state does not change between selections
+     */
+    private void selectItems(int count) {
+        for (int i = 0; i < count; i++) {
+            final int position = 1 + i % (ITEM_COUNT - 1);
+            mSpinner.onItemSelected(mAdapterView, null, position, position);
+        }
+    }
+
+    private long allocatedBytes() {
+        return mThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}